@@ -57,10 +57,14 @@ dependencies {
 	implementation("com.google.code.gson:gson:2.11.0")
     implementation("org.jetbrains:annotations:16.0.2") // https://www.jetbrains.com/help/idea/annotating-source-code.html
     implementation("com.github.Anon8281:UniversalScheduler:0.1.3") // https://github.com/Anon8281/UniversalScheduler
+    implementation("com.h2database:h2-mvstore:2.2.224") // https://www.h2database.com/html/mvstore.html
     //implementation("org.bstats:bstats-bukkit:3.0.2") // https://bstats.org/getting-started/include-metrics
 
     testImplementation(platform("org.junit:junit-bom:5.9.1"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    testImplementation("org.spigotmc:spigot-api:1.20.2-R0.1-SNAPSHOT") { // The records reference Bukkit classes
+        exclude("com.google.code.gson", "gson")
+    }
 }
 
 
@@ -94,6 +98,7 @@ tasks {
     shadowJar {
 		relocate("com.google", "com.dre.brewery.depend.google")
         relocate("com.github.Anon8281.universalScheduler", "com.dre.brewery.depend.universalScheduler")
+        relocate("org.h2", "com.dre.brewery.depend.h2")
 		//relocate("org.bstats", "com.dre.brewery.integration.bstats")
 
         archiveClassifier.set("")
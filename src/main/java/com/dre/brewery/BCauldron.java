@@ -3,8 +3,11 @@ package com.dre.brewery;
 import com.dre.brewery.api.events.IngedientAddEvent;
 import com.dre.brewery.filedata.BConfig;
 import com.dre.brewery.recipe.BCauldronRecipe;
+import com.dre.brewery.recipe.CauldronRecipeMatcher;
 import com.dre.brewery.recipe.RecipeItem;
+import com.dre.brewery.storage.DataManager;
 import com.dre.brewery.utility.BUtil;
+import com.dre.brewery.utility.BlockMap;
 import com.dre.brewery.utility.LegacyUtil;
 import com.dre.brewery.utility.MinecraftVersion;
 import com.dre.brewery.utility.Tuple;
@@ -28,13 +31,16 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.dre.brewery.utility.MinecraftVersion.V1_9;
 
@@ -44,22 +50,30 @@ public class BCauldron {
 	public static final byte EMPTY = 0, SOME = 1, FULL = 2;
 	public static final int PARTICLEPAUSE = 15;
 	public static Random particleRandom = new Random();
+	private static final Color UNCOOKED_COLOR = Color.fromRGB(153, 221, 255); // Bright Blue
 	private static final Set<UUID> plInteracted = new HashSet<>(); // Interact Event helper
-	public static Map<Block, BCauldron> bcauldrons = new ConcurrentHashMap<>(); // All active cauldrons. Mapped to their block for fast retrieve
+	public static final BlockMap<BCauldron> bcauldrons = new BlockMap<>(); // All active cauldrons. Mapped to their block for fast retrieve
+	private static final Map<Block, BCauldron> bcauldronsView = bcauldrons.asMap(BCauldron::getBlock);
 
 	private BIngredients ingredients = new BIngredients();
 	private final Block block;
 	private int state = 0;
 	private boolean changed = false; // Not really needed anymore
-	private BCauldronRecipe particleRecipe; // null if we haven't checked, empty if there is none
+	private boolean needsSave; // State or ingredients changed since it was last saved
+	private BCauldronRecipe cauldronRecipe; // Best Cauldron Recipe for the ingredients, null if there is none
+	private CauldronRecipeMatcher recipeMatcher; // The one cauldronRecipe was found with, null if we haven't checked
 	private Color particleColor;
 	private final Location particleLocation;
+	private final Location randParticleLocation; // Reused for every particle at a random position
+	private Particle.DustOptions dustOptions; // For the current particleColor
 	private final UUID id;
 
 	public BCauldron(Block block) {
 		this.block = block;
 		this.particleLocation = block.getLocation().add(0.5, 0.9, 0.5);
+		this.randParticleLocation = particleLocation.clone();
 		this.id = UUID.randomUUID();
+		setNeedsSave(true);
 	}
 
 	// loading from file
@@ -68,16 +82,19 @@ public class BCauldron {
 		this.state = state;
 		this.ingredients = ingredients;
 		particleLocation = block.getLocation().add(0.5, 0.9, 0.5);
+		randParticleLocation = particleLocation.clone();
 		this.id = id;
 	}
 
 	/**
-	 * Updates this Cauldron, increasing the cook time and checking for Heatsource
+	 * Updates this Cauldron, increasing the cook time and checking for Heatsource.
+	 * <p>Also sets if it spawns particles until the next update
 	 *
 	 * @return false if Cauldron needs to be removed
 	 */
 	public boolean onUpdate() {
 		// add a minute to cooking time
+		boolean heated = false;
 		if (!BUtil.isChunkLoaded(block)) {
 			increaseState();
 		} else {
@@ -88,16 +105,90 @@ public class BCauldron {
 			// Check if fire still alive
 			if (LegacyUtil.isCauldronHeatsource(block.getRelative(BlockFace.DOWN))) {
 				increaseState();
+				heated = true;
 			}
 		}
+		CauldronParticles.getInstance().setActive(this, heated);
 		return true;
 	}
 
+	/**
+	 * Update all Cauldrons, called every minute.
+	 * <p>On Folia, the Cauldrons of each chunk are updated together in one task on the thread of their region,
+	 * otherwise all of them are updated right away
+	 */
+	public static void onUpdateAll() {
+		long start = System.nanoTime();
+		if (!BreweryPlugin.isFolia()) {
+			int count = bcauldrons.size();
+			int removed = updateAll(bcauldrons.values());
+			BreweryPlugin.getInstance().debugLog(String.format("Updated %d Cauldrons, removed %d (%.2fms)",
+				count, removed, (System.nanoTime() - start) / 1000000f));
+			return;
+		}
+
+		Map<UUID, Map<Long, List<BCauldron>>> byChunk = new HashMap<>();
+		int count = 0;
+		for (BCauldron cauldron : bcauldrons.values()) {
+			byChunk.computeIfAbsent(cauldron.block.getWorld().getUID(), world -> new HashMap<>())
+				.computeIfAbsent(BUtil.chunkKey(cauldron.block.getX() >> 4, cauldron.block.getZ() >> 4), chunk -> new ArrayList<>())
+				.add(cauldron);
+			count++;
+		}
+		List<List<BCauldron>> groups = new ArrayList<>();
+		byChunk.values().forEach(chunks -> groups.addAll(chunks.values()));
+		if (groups.isEmpty()) {
+			return;
+		}
+
+		int total = count;
+		AtomicInteger remaining = new AtomicInteger(groups.size());
+		AtomicInteger removed = new AtomicInteger();
+		AtomicLong updateNanos = new AtomicLong();
+		long scheduleNanos = System.nanoTime() - start;
+		for (List<BCauldron> group : groups) {
+			BreweryPlugin.getScheduler().runTask(group.get(0).block.getLocation(), () -> {
+				long groupStart = System.nanoTime();
+				removed.addAndGet(updateAll(group));
+				updateNanos.addAndGet(System.nanoTime() - groupStart);
+				if (remaining.decrementAndGet() == 0) {
+					BreweryPlugin.getInstance().debugLog(String.format("Updated %d Cauldrons in %d chunks, removed %d (grouping %.2fms, updating %.2fms)",
+						total, groups.size(), removed.get(), scheduleNanos / 1000000f, updateNanos.get() / 1000000f));
+				}
+			});
+		}
+	}
+
+	/**
+	 * Update these Cauldrons, then remove all that are not there anymore
+	 *
+	 * @return The number of removed Cauldrons
+	 */
+	private static int updateAll(Collection<BCauldron> cauldrons) {
+		List<Block> removed = null;
+		for (BCauldron cauldron : cauldrons) {
+			if (!cauldron.onUpdate()) {
+				if (removed == null) {
+					removed = new ArrayList<>();
+				}
+				removed.add(cauldron.block);
+			}
+		}
+		if (removed == null) {
+			return 0;
+		}
+		for (Block block : removed) {
+			remove(block);
+		}
+		return removed.size();
+	}
+
 	/**
 	 * Will add a minute to the cooking time
 	 */
 	public void increaseState() {
 		state++;
+		setNeedsSave(true);
 		if (changed) {
 			ingredients = ingredients.copy();
 			changed = false;
@@ -113,9 +204,12 @@ public class BCauldron {
 			changed = false;
 		}
 
-		particleRecipe = null;
+		recipeMatcher = null;
 		particleColor = null;
 		ingredients.add(ingredient, rItem);
+		// Ingredients are only added over a Heatsource
+		CauldronParticles.getInstance().setActive(this, true);
+		setNeedsSave(true);
 		block.getWorld().playEffect(block.getLocation(), Effect.EXTINGUISH, 0);
 		if (state > 0) {
 			state--;
@@ -146,8 +240,23 @@ public class BCauldron {
 		return ingredients;
 	}
 
+	/**
+	 * All active cauldrons as a Map, changing it changes {@link #bcauldrons}.
+	 * <p>Iterating it copies all cauldrons, use {@link #bcauldrons} directly where possible
+	 */
 	public static Map<Block, BCauldron> getBcauldrons() {
-		return bcauldrons;
+		return bcauldronsView;
+	}
+
+	public boolean needsSave() {
+		return needsSave;
+	}
+
+	public void setNeedsSave(boolean needsSave) {
+		this.needsSave = needsSave;
+		if (needsSave) {
+			DataManager.markChanged(this);
+		}
 	}
 
 	public UUID getId() {
@@ -201,18 +310,18 @@ public class BCauldron {
 			BreweryPlugin.getInstance().msg(player, BreweryPlugin.getInstance().languageReader.get("Perms_NoCauldronFill"));
 			return true;
 		}
-		ItemStack potion = ingredients.cook(state, player.getName());
+		ItemStack potion = ingredients.cook(state, player.getName(), this::getCauldronRecipe);
 		if (potion == null) return false;
 
 		if (VERSION.isOrLater(MinecraftVersion.V1_13)) {
 			BlockData data = block.getBlockData();
 			if (!(data instanceof Levelled)) {
-				bcauldrons.remove(block);
+				remove(block);
 				return false;
 			}
 			Levelled cauldron = ((Levelled) data);
 			if (cauldron.getLevel() <= 0) {
-				bcauldrons.remove(block);
+				remove(block);
 				return false;
 			}
 
@@ -220,7 +329,7 @@ public class BCauldron {
 			if (LegacyUtil.WATER_CAULDRON != null && cauldron.getLevel() == 1) {
 				// Empty Cauldron
 				block.setType(Material.CAULDRON);
-				bcauldrons.remove(block);
+				remove(block);
 			} else {
 				cauldron.setLevel(cauldron.getLevel() - 1);
 
@@ -230,7 +339,7 @@ public class BCauldron {
 				block.setBlockData(data);
 
 				if (cauldron.getLevel() <= 0) {
-					bcauldrons.remove(block);
+					remove(block);
 				} else {
 					changed = true;
 				}
@@ -242,14 +351,14 @@ public class BCauldron {
 			if (data > 3) {
 				data = 3;
 			} else if (data <= 0) {
-				bcauldrons.remove(block);
+				remove(block);
 				return false;
 			}
 			data -= 1;
 			LegacyUtil.setData(block, data);
 
 			if (data == 0) {
-				bcauldrons.remove(block);
+				remove(block);
 			} else {
 				changed = true;
 			}
@@ -284,47 +393,73 @@ public class BCauldron {
 
 	public void cookEffect() {
 		if (BUtil.isChunkLoaded(block) && LegacyUtil.isCauldronHeatsource(block.getRelative(BlockFace.DOWN))) {
-			Color color = getParticleColor();
-			// Colorable spirally spell, 0 count enables color instead of the offset variables
-			// Configurable RGB color. The last parameter seems to control the hue and motion, but I couldn't find
-			// how exactly in the client code. 1025 seems to be the best for color brightness and upwards motion
+			spawnCookParticles();
+		}
+	}
 
-			if (VERSION.isOrLater(MinecraftVersion.V1_21)) {
-				block.getWorld().spawnParticle(Particle.SPELL_MOB, getRandParticleLoc(), 0, color);
-			} else {
-				block.getWorld().spawnParticle(Particle.SPELL_MOB, getRandParticleLoc(), 0,
-						((double) color.getRed()) / 255.0,
-						((double) color.getGreen()) / 255.0,
-						((double) color.getBlue()) / 255.0,
-						1025.0);
-			}
+	/**
+	 * Spawn the cooking particles, without checking if the chunk is loaded or the Cauldron heated
+	 */
+	void spawnCookParticles() {
+		Color color = getParticleColor();
+		// Colorable spirally spell, 0 count enables color instead of the offset variables
+		// Configurable RGB color. The last parameter seems to control the hue and motion, but I couldn't find
+		// how exactly in the client code. 1025 seems to be the best for color brightness and upwards motion
+
+		if (VERSION.isOrLater(MinecraftVersion.V1_21)) {
+			block.getWorld().spawnParticle(Particle.SPELL_MOB, getRandParticleLoc(), 0, color);
+		} else {
+			block.getWorld().spawnParticle(Particle.SPELL_MOB, getRandParticleLoc(), 0,
+					((double) color.getRed()) / 255.0,
+					((double) color.getGreen()) / 255.0,
+					((double) color.getBlue()) / 255.0,
+					1025.0);
+		}
 
-			if (BConfig.minimalParticles) {
-				return;
-			}
+		if (BConfig.minimalParticles) {
+			return;
+		}
 
-			if (particleRandom.nextFloat() > 0.85) {
-				// Dark pixely smoke cloud at 0.4 random in x and z
-				// 0 count enables direction, send to y = 1 with speed 0.09
-				block.getWorld().spawnParticle(Particle.SMOKE_LARGE, getRandParticleLoc(), 0, 0, 1, 0, 0.09);
-			}
-			if (particleRandom.nextFloat() > 0.2) {
-				// A Water Splash with 0.2 offset in x and z
-				block.getWorld().spawnParticle(Particle.WATER_SPLASH, particleLocation, 1, 0.2, 0, 0.2);
-			}
+		if (particleRandom.nextFloat() > 0.85) {
+			// Dark pixely smoke cloud at 0.4 random in x and z
+			// 0 count enables direction, send to y = 1 with speed 0.09
+			block.getWorld().spawnParticle(Particle.SMOKE_LARGE, getRandParticleLoc(), 0, 0, 1, 0, 0.09);
+		}
+		if (particleRandom.nextFloat() > 0.2) {
+			// A Water Splash with 0.2 offset in x and z
+			block.getWorld().spawnParticle(Particle.WATER_SPLASH, particleLocation, 1, 0.2, 0, 0.2);
+		}
 
-			if (VERSION.isOrLater(MinecraftVersion.V1_13) && particleRandom.nextFloat() > 0.4) {
-				// Two hovering pixely dust clouds, a bit of offset and with DustOptions to give some color and size
-				block.getWorld().spawnParticle(Particle.REDSTONE, particleLocation, 2, 0.15, 0.2, 0.15, new Particle.DustOptions(color, 1.5f));
+		if (VERSION.isOrLater(MinecraftVersion.V1_13) && particleRandom.nextFloat() > 0.4) {
+			// Two hovering pixely dust clouds, a bit of offset and with DustOptions to give some color and size
+			if (dustOptions == null || !dustOptions.getColor().equals(color)) {
+				dustOptions = new Particle.DustOptions(color, 1.5f);
 			}
+			block.getWorld().spawnParticle(Particle.REDSTONE, particleLocation, 2, 0.15, 0.2, 0.15, dustOptions);
 		}
 	}
 
+	/**
+	 * The returned Location is reused, it is only valid until this is called again
+	 */
 	private Location getRandParticleLoc() {
-		return new Location(particleLocation.getWorld(),
-			particleLocation.getX() + (particleRandom.nextDouble() * 0.8) - 0.4,
-			particleLocation.getY(),
-			particleLocation.getZ() + (particleRandom.nextDouble() * 0.8) - 0.4);
+		randParticleLocation.setX(particleLocation.getX() + (particleRandom.nextDouble() * 0.8) - 0.4);
+		randParticleLocation.setZ(particleLocation.getZ() + (particleRandom.nextDouble() * 0.8) - 0.4);
+		return randParticleLocation;
+	}
+
+	/**
+	 * Get the Cauldron Recipe that fits the ingredients best.
+	 * <p>Remembered until the ingredients or the Cauldron Recipes change
+	 */
+	@Nullable
+	public BCauldronRecipe getCauldronRecipe() {
+		CauldronRecipeMatcher matcher = CauldronRecipeMatcher.getInstance();
+		if (recipeMatcher != matcher) {
+			cauldronRecipe = matcher.findBest(ingredients.getIngredientList());
+			recipeMatcher = matcher;
+		}
+		return cauldronRecipe;
 	}
 
 	/**
@@ -336,19 +471,16 @@ public class BCauldron {
 	@NotNull
 	public Color getParticleColor() {
 		if (state < 1) {
-			return Color.fromRGB(153, 221, 255); // Bright Blue
+			return UNCOOKED_COLOR;
 		}
 		if (particleColor != null) {
 			return particleColor;
 		}
-		if (particleRecipe == null) {
-			// Check for Cauldron Recipe
-			particleRecipe = ingredients.getCauldronRecipe();
-		}
+		BCauldronRecipe recipe = getCauldronRecipe();
 
 		List<Tuple<Integer, Color>> colorList = null;
-		if (particleRecipe != null) {
-			colorList = particleRecipe.getParticleColor();
+		if (recipe != null) {
+			colorList = recipe.getParticleColor();
 		}
 
 		if (colorList == null || colorList.isEmpty()) {
@@ -402,20 +534,6 @@ public class BCauldron {
 		return particleColor;
 	}
 
-	public static void processCookEffects() {
-		if (!BConfig.enableCauldronParticles) return;
-		if (bcauldrons.isEmpty()) {
-			return;
-		}
-		final float chance = 1f / PARTICLEPAUSE;
-
-		for (BCauldron cauldron : bcauldrons.values()) {
-			if (particleRandom.nextFloat() < chance) {
-				BreweryPlugin.getScheduler().runTask(cauldron.block.getLocation(), cauldron::cookEffect);
-			}
-		}
-	}
-
 	public static void clickCauldron(PlayerInteractEvent event) {
 		Material materialInHand = event.getMaterial();
 		ItemStack item = event.getItem();
@@ -528,42 +646,68 @@ public class BCauldron {
 	 */
 	public static void reload() {
 		for (BCauldron cauldron : bcauldrons.values()) {
-			cauldron.particleRecipe = null;
+			cauldron.recipeMatcher = null;
 			cauldron.particleColor = null;
 			if (BConfig.enableCauldronParticles) {
-				if (BUtil.isChunkLoaded(cauldron.block) && LegacyUtil.isCauldronHeatsource(cauldron.block.getRelative(BlockFace.DOWN))) {
+				if (cauldron.isHeatedAndLoaded()) {
 					cauldron.getParticleColor();
+					CauldronParticles.getInstance().setActive(cauldron, true);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Start the particles of loaded Cauldrons that are heated, instead of waiting for their first update
+	 */
+	public static void startParticles(Collection<BCauldron> loaded) {
+		if (!BConfig.enableCauldronParticles) {
+			return;
+		}
+		for (BCauldron cauldron : loaded) {
+			if (cauldron.isHeatedAndLoaded()) {
+				CauldronParticles.getInstance().setActive(cauldron, true);
+			}
+		}
+	}
+
+	private boolean isHeatedAndLoaded() {
+		return BUtil.isChunkLoaded(block) && LegacyUtil.isCauldronHeatsource(block.getRelative(BlockFace.DOWN));
+	}
+
 	/**
 	 * reset to normal cauldron
  	 */
 	public static boolean remove(Block block) {
-		return bcauldrons.remove(block) != null;
+		BCauldron removed = bcauldrons.remove(block);
+		if (removed != null) {
+			DataManager.markRemoved(removed);
+			CauldronParticles.getInstance().setActive(removed, false);
+			return true;
+		}
+		return false;
 	}
 
 	/**
 	 * Are any Cauldrons in that World
 	 */
 	public static boolean hasDataInWorld(World world) {
-		return bcauldrons.keySet().stream().anyMatch(block -> block.getWorld().equals(world));
+		return bcauldrons.hasDataInWorld(world);
 	}
 
 	// unloads cauldrons that are in a unloading world
 	// as they were written to file just before, this is safe to do
 	public static void onUnload(World world) {
-		bcauldrons.keySet().removeIf(block -> block.getWorld().equals(world));
+		bcauldrons.removeWorld(world.getUID());
+		CauldronParticles.getInstance().onUnload(world);
 	}
 
 	/**
 	 * Unload all Cauldrons that have are in a unloaded World
 	 */
 	public static void unloadWorlds() {
-		List<World> worlds = BreweryPlugin.getInstance().getServer().getWorlds();
-		bcauldrons.keySet().removeIf(block -> !worlds.contains(block.getWorld()));
+		bcauldrons.removeWorldsIf(world -> BreweryPlugin.getInstance().getServer().getWorld(world) == null);
+		CauldronParticles.getInstance().unloadWorlds();
 	}
 
 	public static void save(ConfigurationSection config, ConfigurationSection oldData) {
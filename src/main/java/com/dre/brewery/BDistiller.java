@@ -1,6 +1,7 @@
 package com.dre.brewery;
 
 import com.dre.brewery.lore.BrewLore;
+import com.dre.brewery.utility.BlockMap;
 import com.dre.brewery.utility.MinecraftVersion;
 import com.github.Anon8281.universalScheduler.UniversalRunnable;
 import com.github.Anon8281.universalScheduler.scheduling.tasks.MyScheduledTask;
@@ -13,9 +14,6 @@ import org.bukkit.inventory.BrewerInventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.PotionMeta;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
  * Updated for 1.9 to replicate the "Brewing" process for distilling.
  * Because of how metadata has changed, the brewer no longer triggers as previously described.
@@ -30,7 +28,7 @@ public class BDistiller {
 	private static final MinecraftVersion VERSION = BreweryPlugin.getMCVersion();
 
 	private static final int DISTILLTIME = 400;
-	private static Map<Block, BDistiller> trackedDistillers = new ConcurrentHashMap<>();
+	private static final BlockMap<BDistiller> trackedDistillers = new BlockMap<>();
 
 	private MyScheduledTask task;
 	private int runTime = -1;
@@ -178,7 +176,7 @@ public class BDistiller {
 			BreweryPlugin.getScheduler().runTask(standBlock.getLocation(), () -> {
 				if (standBlock.getType() != Material.BREWING_STAND) {
 					this.cancel();
-					trackedDistillers.remove(standBlock);
+					trackedDistillers.remove(standBlock, BDistiller.this);
 					BreweryPlugin.getInstance().debugLog("The block was replaced; not a brewing stand.");
 					return;
 				}
@@ -201,7 +199,7 @@ public class BDistiller {
 				stand.update();
 				if (!runDistill(stand.getInventory(), contents)) {
 					this.cancel();
-					trackedDistillers.remove(standBlock);
+					trackedDistillers.remove(standBlock, BDistiller.this);
 					BreweryPlugin.getInstance().debugLog("All done distilling");
 				} else {
 					brewTime = -1; // go again.
@@ -238,7 +236,7 @@ public class BDistiller {
 				case 0:
 					// No custom potion, cancel and ignore
 					this.cancel();
-					trackedDistillers.remove(standBlock);
+					trackedDistillers.remove(standBlock, BDistiller.this);
 					showAlc(inventory, contents);
 					BreweryPlugin.getInstance().debugLog("nothing to distill");
 					return false;
@@ -6,9 +6,11 @@ import com.dre.brewery.lore.Base91EncoderStream;
 import com.dre.brewery.lore.BrewLore;
 import com.dre.brewery.recipe.BCauldronRecipe;
 import com.dre.brewery.recipe.BRecipe;
+import com.dre.brewery.recipe.CauldronRecipeMatcher;
 import com.dre.brewery.recipe.Ingredient;
 import com.dre.brewery.recipe.ItemLoader;
 import com.dre.brewery.recipe.RecipeItem;
+import com.dre.brewery.recipe.RecipeMatcher;
 import com.dre.brewery.recipe.PotionColor;
 import com.dre.brewery.utility.MinecraftVersion;
 import org.bukkit.Material;
@@ -26,6 +28,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Represents ingredients in Cauldron, Brew
@@ -109,6 +112,15 @@ public class BIngredients {
 	 * returns an Potion item with cooked ingredients
 	 */
 	public ItemStack cook(int state, String brewer) {
+		return cook(state, brewer, this::getCauldronRecipe);
+	}
+
+	/**
+	 * Cook with a Cauldron Recipe that may be known already
+	 *
+	 * @param cauldronRecipeSupplier Gets the Cauldron Recipe of these ingredients, only called if it is needed
+	 */
+	public ItemStack cook(int state, String brewer, Supplier<BCauldronRecipe> cauldronRecipeSupplier) {
 
 		ItemStack potion = new ItemStack(Material.POTION);
 		PotionMeta potionMeta = (PotionMeta) potion.getItemMeta();
@@ -152,7 +164,7 @@ public class BIngredients {
 				cookedName = BreweryPlugin.getInstance().languageReader.get("Brew_ThickBrew");
 				PotionColor.BLUE.colorBrew(potionMeta, potion, false);
 			} else {
-				BCauldronRecipe cauldronRecipe = getCauldronRecipe();
+				BCauldronRecipe cauldronRecipe = cauldronRecipeSupplier.get();
 				if (cauldronRecipe != null) {
 					BreweryPlugin.getInstance().debugLog("Found Cauldron Recipe: " + cauldronRecipe.getName());
 					cookedName = cauldronRecipe.getName();
@@ -219,23 +231,40 @@ public class BIngredients {
 	 * best recipe for current state of potion, STILL not always returns the correct one...
 	 */
 	public BRecipe getBestRecipe(float wood, float time, boolean distilled) {
+		RecipeMatcher matcher = RecipeMatcher.getInstance();
+		byte[] fingerprint = getFingerprint();
+		if (fingerprint == null) {
+			return searchBestRecipe(matcher, wood, time, distilled);
+		}
+		return matcher.getBestRecipe(fingerprint, wood, time, distilled, () -> searchBestRecipe(matcher, wood, time, distilled));
+	}
+
+	private BRecipe searchBestRecipe(RecipeMatcher matcher, float wood, float time, boolean distilled) {
 		float quality = 0;
 		int ingredientQuality;
 		int cookingQuality;
 		int woodQuality;
 		int ageQuality;
 		BRecipe bestRecipe = null;
-		for (BRecipe recipe : BRecipe.getAllRecipes()) {
-			ingredientQuality = getIngredientQuality(recipe);
+		// Only recipes that have all their ingredients in here can be the best
+		RecipeMatcher.Candidates candidates = matcher.match(ingredients);
+		for (int i = 0; i < candidates.size(); i++) {
+			BRecipe recipe = candidates.getRecipe(i);
 			cookingQuality = getCookingQuality(recipe, distilled);
+			if (cookingQuality < 0) {
+				continue;
+			}
+			ingredientQuality = getIngredientQuality(recipe, candidates.getAmounts(i));
 
-			if (ingredientQuality > -1 && cookingQuality > -1) {
+			if (ingredientQuality > -1) {
 				if (recipe.needsToAge() || time > 0.5) {
 					// needs riping in barrel
 					ageQuality = getAgeQuality(recipe, time);
 					woodQuality = getWoodQuality(recipe, wood);
-					BreweryPlugin.getInstance().debugLog("Ingredient Quality: " + ingredientQuality + " Cooking Quality: " + cookingQuality +
-						" Wood Quality: " + woodQuality + " age Quality: " + ageQuality + " for " + recipe.getName(5));
+					if (BreweryPlugin.debug) {
+						BreweryPlugin.getInstance().debugLog("Ingredient Quality: " + ingredientQuality + " Cooking Quality: " + cookingQuality +
+							" Wood Quality: " + woodQuality + " age Quality: " + ageQuality + " for " + recipe.getName(5));
+					}
 
 					// is this recipe better than the previous best?
 					if ((((float) ingredientQuality + cookingQuality + woodQuality + ageQuality) / 4) > quality) {
@@ -243,7 +272,9 @@ public class BIngredients {
 						bestRecipe = recipe;
 					}
 				} else {
-					BreweryPlugin.getInstance().debugLog("Ingredient Quality: " + ingredientQuality + " Cooking Quality: " + cookingQuality + " for " + recipe.getName(5));
+					if (BreweryPlugin.debug) {
+						BreweryPlugin.getInstance().debugLog("Ingredient Quality: " + ingredientQuality + " Cooking Quality: " + cookingQuality + " for " + recipe.getName(5));
+					}
 					// calculate quality without age and barrel
 					if ((((float) ingredientQuality + cookingQuality) / 2) > quality) {
 						quality = ((float) ingredientQuality + cookingQuality) / 2;
@@ -252,7 +283,7 @@ public class BIngredients {
 				}
 			}
 		}
-		if (bestRecipe != null) {
+		if (bestRecipe != null && BreweryPlugin.debug) {
 			BreweryPlugin.getInstance().debugLog("best recipe: " + bestRecipe.getName(5) + " has Quality= " + quality);
 		}
 		return bestRecipe;
@@ -278,20 +309,7 @@ public class BIngredients {
 	 */
 	@Nullable
 	public BCauldronRecipe getCauldronRecipe() {
-		BCauldronRecipe best = null;
-		float bestMatch = 0;
-		float match;
-		for (BCauldronRecipe recipe : BCauldronRecipe.getAllRecipes()) {
-			match = recipe.getIngredientMatch(ingredients);
-			if (match >= 10) {
-				return recipe;
-			}
-			if (match > bestMatch) {
-				best = recipe;
-				bestMatch = match;
-			}
-		}
-		return best;
+		return CauldronRecipeMatcher.getInstance().findBest(ingredients);
 	}
 
 	/**
@@ -327,19 +345,32 @@ public class BIngredients {
 	 * returns the quality of the ingredients conditioning given recipe, -1 if no recipe is near them
 	 */
 	public int getIngredientQuality(BRecipe recipe) {
-		float quality = 10;
-		int count;
-		int badStuff = 0;
 		if (recipe.isMissingIngredients(ingredients)) {
 			// when ingredients are not complete
 			return -1;
 		}
-		for (Ingredient ingredient : ingredients) {
-			int amountInRecipe = recipe.amountOf(ingredient);
-			count = ingredient.getAmount();
+		int[] amountsInRecipe = new int[ingredients.size()];
+		for (int i = 0; i < amountsInRecipe.length; i++) {
+			amountsInRecipe[i] = recipe.amountOf(ingredients.get(i));
+		}
+		return getIngredientQuality(recipe, amountsInRecipe);
+	}
+
+	/**
+	 * Ingredient quality for a recipe that is not missing any ingredients,
+	 * with the amount the recipe wants of each of our ingredients, in order
+	 */
+	private int getIngredientQuality(BRecipe recipe, int[] amountsInRecipe) {
+		float quality = 10;
+		int count;
+		int badStuff = 0;
+		int totalCount = getIngredientsCount();
+		for (int i = 0; i < amountsInRecipe.length; i++) {
+			int amountInRecipe = amountsInRecipe[i];
+			count = ingredients.get(i).getAmount();
 			if (amountInRecipe == 0) {
 				// this ingredient doesnt belong into the recipe
-				if (count > (getIngredientsCount() / 2)) {
+				if (count > (totalCount / 2)) {
 					// when more than half of the ingredients dont fit into the
 					// recipe
 					return -1;
@@ -477,6 +508,27 @@ public class BIngredients {
 		}
 	}
 
+	/**
+	 * The ingredients with their full amounts and the cooked time, to recognize equal ingredients.
+	 *
+	 * @return The fingerprint, or null if an ingredient could not be saved
+	 */
+	@Nullable
+	private byte[] getFingerprint() {
+		ByteArrayOutputStream byteStream = new ByteArrayOutputStream(64);
+		try (DataOutputStream out = new DataOutputStream(byteStream)) {
+			out.writeInt(cookedTime);
+			out.writeInt(ingredients.size());
+			for (Ingredient ing : ingredients) {
+				ing.saveTo(out);
+				out.writeInt(ing.getAmount());
+			}
+		} catch (IOException | RuntimeException e) {
+			return null;
+		}
+		return byteStream.toByteArray();
+	}
+
 	public static BIngredients load(DataInputStream in, short dataVersion) throws IOException {
 		int cookedTime = in.readInt();
 		byte size = in.readByte();
@@ -7,6 +7,7 @@ import com.dre.brewery.api.events.brew.BrewDrinkEvent;
 import com.dre.brewery.filedata.BConfig;
 import com.dre.brewery.lore.BrewLore;
 import com.dre.brewery.recipe.BEffect;
+import com.dre.brewery.storage.DataManager;
 import com.dre.brewery.utility.BUtil;
 import com.dre.brewery.utility.MinecraftVersion;
 import com.dre.brewery.utility.PermissionUtil;
@@ -54,9 +55,15 @@ public class BPlayer {
 	private int alcRecovery = -1; // Drunkeness reduce per minute
 	private Vector push = new Vector(0, 0, 0);
 	private int time = 20;
+	// The data that was last saved, changes to it are detected by comparing
+	private boolean needsSave;
+	private int savedQuality;
+	private int savedDrunkenness;
+	private int savedOfflineDrunk;
 
 	public BPlayer(String uuid) {
 		this.uuid = uuid;
+		this.needsSave = true;
 	}
 
 	// reading from file
@@ -65,6 +72,7 @@ public class BPlayer {
 		this.drunkenness = drunkenness;
 		this.offlineDrunk = offlineDrunk;
 		this.uuid = uuid;
+		setNeedsSave(false);
 	}
 
 	public BPlayer(UUID uuid, int quality, int drunkenness, int offlineDrunk) {
@@ -134,7 +142,10 @@ public class BPlayer {
 	}
 
 	public static void remove(OfflinePlayer player) {
-		players.remove(BUtil.playerString(player));
+		BPlayer removed = players.remove(BUtil.playerString(player));
+		if (removed != null) {
+			DataManager.markRemoved(removed);
+		}
 	}
 
 
@@ -147,6 +158,7 @@ public class BPlayer {
 			Map.Entry<String, BPlayer> entry = iterator.next();
 			if (entry.getValue() == this) {
 				iterator.remove();
+				DataManager.markRemoved(this);
 				return;
 			}
 		}
@@ -837,6 +849,7 @@ public class BPlayer {
 
 				if (bplayer.drain(playerIfOnline, bplayer.getAlcRecovery())) {
 					iter.remove();
+					DataManager.markRemoved(bplayer);
 				}
 			}
 		}
@@ -899,6 +912,22 @@ public class BPlayer {
 
 	public void setQuality(int value) { quality = value; }
 
+	/**
+	 * If the drunkenness or quality changed since the last save
+	 */
+	public boolean needsSave() {
+		return needsSave || quality != savedQuality || drunkenness != savedDrunkenness || offlineDrunk != savedOfflineDrunk;
+	}
+
+	public void setNeedsSave(boolean needsSave) {
+		this.needsSave = needsSave;
+		if (!needsSave) {
+			savedQuality = quality;
+			savedDrunkenness = drunkenness;
+			savedOfflineDrunk = offlineDrunk;
+		}
+	}
+
 	// opposite of quality
 	public int getHangoverQuality() {
 		if (drunkenness < 0) {
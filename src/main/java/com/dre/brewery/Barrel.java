@@ -7,10 +7,12 @@ import com.dre.brewery.api.events.barrel.BarrelRemoveEvent;
 import com.dre.brewery.filedata.BConfig;
 import com.dre.brewery.integration.barrel.LogBlockBarrel;
 import com.dre.brewery.lore.BrewLore;
+import com.dre.brewery.storage.DataManager;
+import com.dre.brewery.storage.records.BarrelSnapshot;
 import com.dre.brewery.utility.BUtil;
 import com.dre.brewery.utility.BoundingBox;
 import com.dre.brewery.utility.LegacyUtil;
-import com.github.Anon8281.universalScheduler.UniversalRunnable;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.Sound;
@@ -29,6 +31,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -40,13 +43,18 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class Barrel implements InventoryHolder {
 
 	public static volatile List<Barrel> barrels = new ArrayList<>();
-	private static int check = 0; // Which Barrel was last checked
+	private static final BarrelIndex index = new BarrelIndex(); // Lookup of Barrels by Chunk
+	// Global aging time in years (see agingYearDuration), increased every minute. Difference between this and agingStart of a Barrel is its age time
+	private static volatile double agingClock = 0;
 
 	private final Block spigot;
 	private final BarrelBody body; // The Blocks that make up a Barrel in the World
-	private boolean checked; // Checked by the random BarrelCheck routine
 	private Inventory inventory;
-	private float time;
+	private boolean resident = true; // Contents are loaded. If not, they are loaded from storage when needed, see BConfig.lazyBarrels
+	private volatile ItemStack[] evicted; // Contents that were unloaded, but may not have been written to storage yet
+	private boolean loading; // Contents are being fetched from storage
+	private double agingStart; // The agingClock when this Barrel was last opened
+	private boolean needsSave; // Changed since it was last saved. Aging alone does not count, the saved data includes the aging clock
 	private final UUID id;
 
 	/**
@@ -60,7 +68,9 @@ public class Barrel implements InventoryHolder {
 			inventory = BreweryPlugin.getInstance().getServer().createInventory(this, 9, BreweryPlugin.getInstance().languageReader.get("Etc_Barrel"));
 		}
 		body = new BarrelBody(this, signoffset);
+		agingStart = agingClock;
 		id = UUID.randomUUID();
+		setNeedsSave(true);
 	}
 
 	/**
@@ -82,7 +92,7 @@ public class Barrel implements InventoryHolder {
 				}
 			}
 		}
-		this.time = time;
+		this.agingStart = agingClock - time;
 		this.id = id;
 		body = new BarrelBody(this, sign, bounds);
 	}
@@ -101,35 +111,26 @@ public class Barrel implements InventoryHolder {
 				}
 			}
 		}
-		this.time = time;
+		this.agingStart = agingClock - time;
+		this.id = id;
+		body = new BarrelBody(this, sign, bounds);
+	}
+
+	/**
+	 * Load from storage without the contents, they are loaded when the chunk loads or they are first needed
+	 */
+	public Barrel(Block spigot, byte sign, BoundingBox bounds, float time, UUID id) {
+		this.spigot = spigot;
+		this.resident = false;
+		this.agingStart = agingClock - time;
 		this.id = id;
 		body = new BarrelBody(this, sign, bounds);
 	}
 
 	public static void onUpdate() {
-		for (Barrel barrel : barrels) {
-			// Minecraft day is 20 min, so add 1/20 to the time every minute
-			if (barrel != null) {
-				barrel.time += (float) (1.0 / BConfig.agingYearDuration);
-			}
-		}
-		int numBarrels = barrels.size();
-		if (check == 0 && numBarrels > 0) {
-			Barrel random = barrels.get((int) Math.floor(Math.random() * numBarrels));
-			if (random != null) {
-				// You have been selected for a random search
-				// We want to check at least one barrel every time
-				random.checked = false;
-			}
-			if (numBarrels > 50) {
-				Barrel randomInTheBack = barrels.get(numBarrels - 1 - (int) (Math.random() * (numBarrels >>> 2)));
-				if (randomInTheBack != null) {
-					// Prioritize checking one of the less recently used barrels as well
-					randomInTheBack.checked = false;
-				}
-			}
-			new BarrelCheck().runTaskTimer(BreweryPlugin.getInstance(), 1, 1);
-		}
+		// Minecraft day is 20 min, so add 1/20 to the time every minute
+		// The Barrels compute their age time from this when they are opened
+		agingClock += 1.0 / BConfig.agingYearDuration;
 	}
 
 	public boolean hasPermsOpen(Player player, PlayerInteractEvent event) {
@@ -166,6 +167,7 @@ public class Barrel implements InventoryHolder {
 	 * player opens the barrel
 	 */
 	public void open(Player player) {
+		loadContents();
 		if (inventory == null) {
 			if (isLarge()) {
 				inventory = BreweryPlugin.getInstance().getServer().createInventory(this, 27, BreweryPlugin.getInstance().languageReader.get("Etc_Barrel"));
@@ -173,6 +175,7 @@ public class Barrel implements InventoryHolder {
 				inventory = BreweryPlugin.getInstance().getServer().createInventory(this, 9, BreweryPlugin.getInstance().languageReader.get("Etc_Barrel"));
 			}
 		} else {
+			float time = getTime();
 			if (time > 0) {
 				// if nobody has the inventory opened
 				if (inventory.getViewers().isEmpty()) {
@@ -180,14 +183,7 @@ public class Barrel implements InventoryHolder {
 					if (inventory.contains(Material.POTION)) {
 						byte wood = body.getWood();
 						long loadTime = System.nanoTime();
-						for (ItemStack item : inventory.getContents()) {
-							if (item != null) {
-								Brew brew = Brew.get(item);
-								if (brew != null) {
-									brew.age(item, time, wood);
-								}
-							}
-						}
+						Brew.ageAll(inventory.getContents(), time, wood, -1);
 						loadTime = System.nanoTime() - loadTime;
 						float ftime = (float) (loadTime / 1000000.0);
 						BreweryPlugin.getInstance().debugLog("opening Barrel with potions (" + ftime + "ms)");
@@ -196,7 +192,9 @@ public class Barrel implements InventoryHolder {
 			}
 		}
 		// reset barreltime, potions have new age
-		time = 0;
+		agingStart = agingClock;
+		// The player may change the contents
+		setNeedsSave(true);
 
 		if (BConfig.useLB) {
 			try {
@@ -233,12 +231,164 @@ public class Barrel implements InventoryHolder {
 		}
 	}
 
+	/**
+	 * Get the Inventory of this Barrel, loading its contents from storage if needed
+	 */
 	@Override
 	@NotNull
 	public Inventory getInventory() {
+		loadContents();
 		return inventory;
 	}
 
+	/**
+	 * Are the contents of this Barrel loaded
+	 */
+	public boolean isResident() {
+		return resident;
+	}
+
+	/**
+	 * Load the contents of this Barrel from storage now, if they are not loaded yet.
+	 * <p>Waits for writes of this Barrel that are still queued
+	 */
+	public void loadContents() {
+		if (resident) {
+			return;
+		}
+		ItemStack[] items = evicted;
+		if (items != null) {
+			setEvictedContents(items);
+			return;
+		}
+		setContents(BreweryPlugin.getDataManager().async().getBarrelContents(id).join());
+	}
+
+	/**
+	 * Fetch the contents from storage in the background, for when the chunk of this Barrel is loaded
+	 */
+	public void prefetchContents() {
+		if (resident || loading) {
+			return;
+		}
+		ItemStack[] items = evicted;
+		if (items != null) {
+			setEvictedContents(items);
+			return;
+		}
+		loading = true;
+		BreweryPlugin.getDataManager().async().getBarrelContents(id).whenComplete((fetched, e) -> {
+			BreweryPlugin.getScheduler().runTask(spigot.getLocation(), () -> {
+				loading = false;
+				// May have been loaded on access in the meantime, if fetching failed it is tried again on access
+				if (e == null && !resident) {
+					setContents(fetched);
+				}
+			});
+		});
+	}
+
+	/**
+	 * Load the contents that were unloaded, the write of them may still fail so they are saved again
+	 */
+	private void setEvictedContents(ItemStack[] items) {
+		setContents(items);
+		setNeedsSave(true);
+	}
+
+	private void setContents(@Nullable ItemStack[] items) {
+		if (isLarge()) {
+			inventory = BreweryPlugin.getInstance().getServer().createInventory(this, 27, BreweryPlugin.getInstance().languageReader.get("Etc_Barrel"));
+		} else {
+			inventory = BreweryPlugin.getInstance().getServer().createInventory(this, 9, BreweryPlugin.getInstance().languageReader.get("Etc_Barrel"));
+		}
+		if (items != null) {
+			for (int slot = 0; slot < items.length && slot < inventory.getSize(); slot++) {
+				if (items[slot] != null) {
+					inventory.setItem(slot, items[slot]);
+				}
+			}
+		}
+		resident = true;
+		evicted = null;
+	}
+
+	/**
+	 * Unload the contents of this Barrel when its chunk unloads, writing them to storage if they changed.
+	 * <p>Does nothing while someone is looking into the Barrel
+	 */
+	public void unloadContents() {
+		if (!resident || inventory == null || !inventory.getViewers().isEmpty()) {
+			return;
+		}
+		if (!needsSave) {
+			// Storage already has these contents
+			inventory = null;
+			resident = false;
+			return;
+		}
+
+		BarrelSnapshot snapshot = BarrelSnapshot.of(this);
+		ItemStack[] items = snapshot.items();
+		needsSave = false;
+		evicted = items;
+		inventory = null;
+		resident = false;
+		BreweryPlugin.getDataManager().async().saveBarrel(snapshot).whenComplete((ignored, e) -> {
+			BreweryPlugin.getScheduler().runTask(spigot.getLocation(), () -> {
+				// Nothing to do if the contents were loaded again in the meantime, they are saved again anyway
+				if (evicted != items) {
+					return;
+				}
+				if (e != null) {
+					// Storage still has the old contents, keep these loaded until the next save writes them
+					BreweryPlugin.getInstance().warningLog("Keeping the contents of the Barrel at " + spigot.getLocation() + " loaded, writing them failed");
+					setEvictedContents(items);
+				} else {
+					// Storage is up to date now
+					evicted = null;
+				}
+			});
+		});
+	}
+
+	/**
+	 * Start loading the contents of Barrels that have their Spigot in this chunk
+	 */
+	public static void onChunkLoad(Chunk chunk) {
+		for (Barrel barrel : index.getInChunk(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ())) {
+			if (barrel.isSpigotIn(chunk)) {
+				barrel.prefetchContents();
+			}
+		}
+	}
+
+	/**
+	 * Unload the contents of Barrels that have their Spigot in this chunk
+	 */
+	public static void onChunkUnload(Chunk chunk) {
+		for (Barrel barrel : index.getInChunk(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ())) {
+			if (barrel.isSpigotIn(chunk)) {
+				barrel.unloadContents();
+			}
+		}
+	}
+
+	/**
+	 * Start loading the contents of Barrels in chunks that are already loaded
+	 */
+	public static void prefetchLoadedChunks() {
+		for (Barrel barrel : barrels) {
+			if (!barrel.resident && barrel.spigot.getWorld().isChunkLoaded(barrel.spigot.getX() >> 4, barrel.spigot.getZ() >> 4)) {
+				barrel.prefetchContents();
+			}
+		}
+	}
+
+	private boolean isSpigotIn(Chunk chunk) {
+		return spigot.getX() >> 4 == chunk.getX() && spigot.getZ() >> 4 == chunk.getZ();
+	}
+
 	@NotNull
 	public Block getSpigot() {
 		return spigot;
@@ -249,14 +399,85 @@ public class Barrel implements InventoryHolder {
 		return body;
 	}
 
+	/**
+	 * The aging time in years since this Barrel was last opened
+	 */
 	public float getTime() {
-		return time;
+		return getTime(agingClock);
+	}
+
+	/**
+	 * The aging time this Barrel had or will have at the given aging clock
+	 */
+	public float getTime(double clock) {
+		return (float) (clock - agingStart);
+	}
+
+	public static double getAgingClock() {
+		return agingClock;
+	}
+
+	/**
+	 * Set the global aging clock, when loading the saved clock
+	 */
+	public static void setAgingClock(double clock) {
+		agingClock = clock;
+	}
+
+	public boolean needsSave() {
+		return needsSave;
+	}
+
+	public void setNeedsSave(boolean needsSave) {
+		this.needsSave = needsSave;
+		if (needsSave) {
+			DataManager.markChanged(this);
+		}
+	}
+
+	/**
+	 * Is this Barrel in the list of Barrels, and not just created to check if some blocks form a Barrel
+	 */
+	public boolean isLoaded() {
+		for (Barrel barrel : index.getCandidates(spigot)) {
+			if (barrel == this) {
+				return true;
+			}
+		}
+		return false;
 	}
 
+	/**
+	 * All loaded Barrels.
+	 * <p>Do not add or remove Barrels from this List directly, use addBarrel() and remove()
+	 * so the Barrel is also found when looking it up by Block.
+	 */
 	public static List<Barrel> getBarrels() {
 		return barrels;
 	}
 
+	/**
+	 * Add a loaded Barrel to the list of Barrels and index it
+	 */
+	public static void addBarrel(Barrel barrel) {
+		barrels.add(barrel);
+		index.add(barrel);
+	}
+
+	public static void addBarrels(Collection<Barrel> toAdd) {
+		barrels.addAll(toAdd);
+		for (Barrel barrel : toAdd) {
+			index.add(barrel);
+		}
+	}
+
+	/**
+	 * Update the index after the Bounds of this Barrel changed
+	 */
+	void reindex() {
+		index.update(this);
+	}
+
 	public UUID getId() {
 		return id;
 	}
@@ -313,19 +534,16 @@ public class Barrel implements InventoryHolder {
 			signoffset = (byte) (sign.getY() - spigot.getY());
 		}
 
-		int i = 0;
-		for (Barrel barrel : barrels) {
-			if (barrel != null && barrel.body.isSignOfBarrel(signoffset)) {
+		for (Barrel barrel : index.getCandidates(spigot)) {
+			if (barrel.body.isSignOfBarrel(signoffset)) {
 				if (barrel.spigot.equals(spigot)) {
 					if (barrel.body.getSignoffset() == 0 && signoffset != 0) {
 						// Barrel has no signOffset even though we clicked a sign, may be old
 						barrel.body.setSignoffset(signoffset);
 					}
-					moveMRU(i);
 					return barrel;
 				}
 			}
-			i++;
 		}
 		return null;
 	}
@@ -336,27 +554,16 @@ public class Barrel implements InventoryHolder {
 	@Nullable
 	public static Barrel getByWood(Block wood) {
 		if (LegacyUtil.isWoodPlanks(wood.getType()) || LegacyUtil.isWoodStairs(wood.getType())) {
-			int i = 0;
-			for (Barrel barrel : barrels) {
-				if (barrel.getSpigot().getWorld().equals(wood.getWorld()) && barrel.body.getBounds().contains(wood)) {
-					moveMRU(i);
+			for (Barrel barrel : index.getCandidates(wood)) {
+				BoundingBox bounds = barrel.body.getBounds();
+				if (bounds != null && bounds.contains(wood) && barrel.getSpigot().getWorld().equals(wood.getWorld())) {
 					return barrel;
 				}
-				i++;
 			}
 		}
 		return null;
 	}
 
-	// Move Barrel that was recently used more towards the front of the List
-	// Optimizes retrieve by Block over time
-	private static void moveMRU(int index) {
-		if (index > 0) {
-			// Swap entry at the index with the one next to it
-			barrels.set(index - 1, barrels.set(index, barrels.get(index - 1)));
-		}
-	}
-
 	/**
 	 * creates a new Barrel out of a sign
 	 */
@@ -390,6 +597,7 @@ public class Barrel implements InventoryHolder {
 				BreweryPlugin.getInstance().getServer().getPluginManager().callEvent(createEvent);
 				if (!createEvent.isCancelled()) {
 					barrels.add(0, barrel);
+					index.add(barrel);
 					return true;
 				}
 			}
@@ -414,6 +622,7 @@ public class Barrel implements InventoryHolder {
 		// Listened to by LWCBarrel (IntegrationListener)
 		BreweryPlugin.getInstance().getServer().getPluginManager().callEvent(event);
 
+		loadContents();
 		if (inventory != null) {
 			List<HumanEntity> viewers = new ArrayList<>(inventory.getViewers());
 			// Copy List to fix ConcModExc
@@ -435,6 +644,8 @@ public class Barrel implements InventoryHolder {
 				if (body == null) {
 					BreweryPlugin.getInstance().debugLog("Barrel Body is null, can't drop items: " + this.id);
 					barrels.remove(this);
+					index.remove(this);
+					DataManager.markRemoved(this);
 					return;
 				}
 
@@ -444,7 +655,7 @@ public class Barrel implements InventoryHolder {
 						Brew brew = Brew.get(item);
 						if (brew != null) {
 							// Brew before throwing
-							brew.age(item, time, wood);
+							brew.age(item, getTime(), wood);
 							PotionMeta meta = (PotionMeta) item.getItemMeta();
 							if (BrewLore.hasColorLore(meta)) {
 								BrewLore lore = new BrewLore(brew, meta);
@@ -465,6 +676,8 @@ public class Barrel implements InventoryHolder {
 		}
 
 		barrels.remove(this);
+		index.remove(this);
+		DataManager.markRemoved(this);
 	}
 
 	/**
@@ -513,11 +726,18 @@ public class Barrel implements InventoryHolder {
 		return body.getBrokenBlock(force);
 	}
 
+	/**
+	 * All Barrels that have a Block in this chunk
+	 */
+	public static Barrel[] getInChunk(UUID world, int chunkX, int chunkZ) {
+		return index.getInChunk(world, chunkX, chunkZ);
+	}
+
 	/**
 	 * Are any Barrels in that World
 	 */
 	public static boolean hasDataInWorld(World world) {
-		return barrels.stream().anyMatch(barrel -> barrel.spigot.getWorld().equals(world));
+		return index.hasDataInWorld(world);
 	}
 
 	/**
@@ -525,6 +745,7 @@ public class Barrel implements InventoryHolder {
 	 */
 	public static void onUnload(World world) {
 		barrels.removeIf(barrel -> barrel.spigot.getWorld().equals(world));
+		index.removeWorld(world.getUID());
 	}
 
 	/**
@@ -532,7 +753,13 @@ public class Barrel implements InventoryHolder {
 	 */
 	public static void unloadWorlds() {
 		List<World> worlds = BreweryPlugin.getInstance().getServer().getWorlds();
-		barrels.removeIf(barrel -> !worlds.contains(barrel.spigot.getWorld()));
+		barrels.removeIf(barrel -> {
+			if (!worlds.contains(barrel.spigot.getWorld())) {
+				index.remove(barrel);
+				return true;
+			}
+			return false;
+		});
 	}
 
 	/**
@@ -560,6 +787,7 @@ public class Barrel implements InventoryHolder {
 				// save the body data into the section as well
 				barrel.body.save(config, prefix);
 
+				barrel.loadContents();
 				if (barrel.inventory != null) {
 					int slot = 0;
 					ItemStack item;
@@ -568,8 +796,9 @@ public class Barrel implements InventoryHolder {
 						item = barrel.inventory.getItem(slot);
 						if (item != null) {
 							if (invConfig == null) {
-								if (barrel.time != 0) {
-									config.set(prefix + ".time", barrel.time);
+								float time = barrel.getTime();
+								if (time != 0) {
+									config.set(prefix + ".time", time);
 								}
 								invConfig = config.createSection(prefix + ".inv");
 							}
@@ -595,40 +824,4 @@ public class Barrel implements InventoryHolder {
 		}
 	}
 
-	public static class BarrelCheck extends UniversalRunnable {
-		@Override
-		public void run() {
-			boolean repeat = true;
-			while (repeat) {
-				if (check < barrels.size()) {
-					Barrel barrel = barrels.get(check);
-					if (!barrel.checked) {
-						BreweryPlugin.getScheduler().runTask(barrel.getSpigot().getLocation(), () -> {
-							Block broken = barrel.body.getBrokenBlock(false);
-							if (broken != null) {
-								BreweryPlugin.getInstance().debugLog("Barrel at "
-										+ broken.getWorld().getName() + "/" + broken.getX() + "/" + broken.getY() + "/" + broken.getZ()
-										+ " has been destroyed unexpectedly, contents will drop");
-								// remove the barrel if it was destroyed
-								barrel.remove(broken, null, true);
-							} else {
-								// Dont check this barrel again, its enough to check it once after every restart (and when randomly chosen)
-								// as now this is only the backup if we dont register the barrel breaking,
-								// for example when removing it with some world editor
-								barrel.checked = true;
-							}
-						});
-						repeat = false;
-					}
-					check++;
-				} else {
-					check = 0;
-					repeat = false;
-					cancel();
-				}
-			}
-		}
-
-	}
-
 }
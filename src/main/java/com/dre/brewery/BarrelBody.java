@@ -62,7 +62,16 @@ public class BarrelBody {
 
 	public void setBounds(@NotNull BoundingBox bounds) {
 		Objects.requireNonNull(bounds);
+		updateBounds(bounds);
+	}
+
+	private void updateBounds(BoundingBox bounds) {
+		boolean changed = !bounds.equals(this.bounds);
 		this.bounds = bounds;
+		if (changed) {
+			barrel.reindex();
+			barrel.setNeedsSave(true);
+		}
 	}
 
 	public byte getSignoffset() {
@@ -70,6 +79,9 @@ public class BarrelBody {
 	}
 
 	public void setSignoffset(byte signoffset) {
+		if (this.signoffset != signoffset) {
+			barrel.setNeedsSave(true);
+		}
 		this.signoffset = signoffset;
 	}
 
@@ -77,7 +89,7 @@ public class BarrelBody {
 	 * If the Sign of a Large Barrel gets destroyed, set signOffset to 0
 	 */
 	public void destroySign() {
-		signoffset = 0;
+		setSignoffset((byte) 0);
 	}
 
 	/**
@@ -205,7 +217,7 @@ public class BarrelBody {
 			if (LegacyUtil.isSign(spigot.getRelative(0, signoffset, 0).getType())) {
 				return spigot.getRelative(0, signoffset, 0);
 			} else {
-				signoffset = 0;
+				setSignoffset((byte) 0);
 			}
 		}
 		return spigot;
@@ -316,13 +328,13 @@ public class BarrelBody {
 			x = startX;
 			y++;
 		}
-		bounds = new BoundingBox(
+		updateBounds(new BoundingBox(
 			spigot.getX() + startX,
 			spigot.getY(),
 			spigot.getZ() + startZ,
 			spigot.getX() + endX,
 			spigot.getY() + 1,
-			spigot.getZ() + endZ);
+			spigot.getZ() + endZ));
 		return null;
 	}
 
@@ -390,13 +402,13 @@ public class BarrelBody {
 			x = startX;
 			y++;
 		}
-		bounds = new BoundingBox(
+		updateBounds(new BoundingBox(
 			spigot.getX() + startX,
 			spigot.getY(),
 			spigot.getZ() + startZ,
 			spigot.getX() + endX,
 			spigot.getY() + 2,
-			spigot.getZ() + endZ);
+			spigot.getZ() + endZ));
 
 		return null;
 	}
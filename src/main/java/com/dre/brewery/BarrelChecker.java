@@ -0,0 +1,147 @@
+package com.dre.brewery;
+
+import com.dre.brewery.filedata.BConfig;
+import com.dre.brewery.utility.BUtil;
+import org.bukkit.block.Block;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks if Barrels are still intact, as the backup for when their breaking was not registered,
+ * for example when they are removed with a world editor.
+ * <p>Runs every tick for at most {@link BConfig#barrelCheckBudget}. Barrels in chunks that were changed recently are checked first,
+ * then all Barrels in loaded chunks are swept through, so that each is checked at least once every {@link BConfig#barrelCheckWindow}.
+ */
+public class BarrelChecker implements Runnable {
+
+	private static final int MIN_SWEEP_TICKS = 1200; // Start a new sweep at most once a minute
+	private static final int FOLIA_MAX_PER_TICK = 8; // Checks are scheduled on the region threads, the budget can't be measured
+
+	private static final BarrelChecker instance = new BarrelChecker();
+
+	private final Set<Barrel> priority = new LinkedHashSet<>(); // Barrels in changed chunks
+	private final Map<UUID, Set<Long>> changedChunks = new ConcurrentHashMap<>(); // By world, see BUtil.chunkKey. May be marked from any thread
+	private int sweepIndex; // Position in Barrel.barrels
+	private long sweepTicks; // Ticks since the current sweep started
+	private boolean sweepDone;
+	private long lastSweepTicks = -1; // How long the last full sweep took
+
+	// Metrics
+	private long checks;
+	private long checkNanos;
+	private long notLoaded;
+	private final AtomicLong destroyed = new AtomicLong();
+
+	private BarrelChecker() {
+	}
+
+	public static BarrelChecker getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Check the Barrels in this chunk soon, because blocks in it were changed without events
+	 */
+	public void markChanged(UUID world, int chunkX, int chunkZ) {
+		changedChunks.computeIfAbsent(world, uid -> ConcurrentHashMap.newKeySet()).add(BUtil.chunkKey(chunkX, chunkZ));
+	}
+
+	@Override
+	public void run() {
+		long start = System.nanoTime();
+		long deadline = start + BConfig.barrelCheckBudget * 1000L;
+		int maxChecks = BreweryPlugin.isFolia() ? FOLIA_MAX_PER_TICK : Integer.MAX_VALUE;
+		int checked = 0;
+
+		collectChanged();
+		for (Iterator<Barrel> iter = priority.iterator(); iter.hasNext() && checked < maxChecks && System.nanoTime() < deadline; ) {
+			Barrel barrel = iter.next();
+			iter.remove();
+			if (barrel.isLoaded() && BUtil.isChunkLoaded(barrel.getSpigot())) {
+				check(barrel);
+				checked++;
+			}
+		}
+
+		List<Barrel> barrels = Barrel.barrels;
+		int size = barrels.size();
+		sweepTicks++;
+		if (sweepIndex >= size) {
+			if (sweepTicks < MIN_SWEEP_TICKS) {
+				checkNanos += System.nanoTime() - start;
+				return;
+			}
+			sweepIndex = 0;
+			sweepTicks = 0;
+			sweepDone = false;
+		}
+		// Where the sweep has to be by now, to get through all Barrels within the window. Checked even if over budget
+		long windowTicks = Math.max(1, BConfig.barrelCheckWindow * 1200L);
+		long due = Math.min(size, (size * (sweepTicks + 1) + windowTicks - 1) / windowTicks);
+		while (sweepIndex < size && (sweepIndex < due || (checked < maxChecks && System.nanoTime() < deadline))) {
+			Barrel barrel = barrels.get(sweepIndex++);
+			if (!BUtil.isChunkLoaded(barrel.getSpigot())) {
+				// Can't have been changed while not loaded, it is checked in a later sweep
+				notLoaded++;
+				continue;
+			}
+			check(barrel);
+			checked++;
+		}
+		if (!sweepDone && sweepIndex >= size) {
+			sweepDone = true;
+			lastSweepTicks = sweepTicks;
+		}
+		checkNanos += System.nanoTime() - start;
+	}
+
+	private void collectChanged() {
+		for (Map.Entry<UUID, Set<Long>> entry : changedChunks.entrySet()) {
+			Set<Long> chunks = entry.getValue();
+			for (Iterator<Long> iter = chunks.iterator(); iter.hasNext(); ) {
+				long key = iter.next();
+				iter.remove();
+				for (Barrel barrel : Barrel.getInChunk(entry.getKey(), (int) (key >> 32), (int) key)) {
+					priority.add(barrel);
+				}
+			}
+		}
+	}
+
+	private void check(Barrel barrel) {
+		checks++;
+		if (BreweryPlugin.isFolia()) {
+			// Blocks can only be accessed on the thread of their region
+			BreweryPlugin.getScheduler().runTask(barrel.getSpigot().getLocation(), () -> checkNow(barrel));
+		} else {
+			checkNow(barrel);
+		}
+	}
+
+	private void checkNow(Barrel barrel) {
+		Block broken = barrel.getBrokenBlock(false);
+		if (broken != null && barrel.isLoaded()) {
+			BreweryPlugin.getInstance().debugLog("Barrel at "
+					+ broken.getWorld().getName() + "/" + broken.getX() + "/" + broken.getY() + "/" + broken.getZ()
+					+ " has been destroyed unexpectedly, contents will drop");
+			destroyed.incrementAndGet();
+			// remove the barrel if it was destroyed
+			barrel.remove(broken, null, true);
+		}
+	}
+
+	public String getStats() {
+		float avgMicros = checks == 0 ? 0 : checkNanos / 1000f / checks;
+		String lastSweep = lastSweepTicks < 0 ? "none yet" : (lastSweepTicks / 20) + "s";
+		return "Barrel Check: " + checks + " checks" + String.format(" (%.1fµs avg)", avgMicros) + ", " + destroyed.get() + " destroyed Barrels found, "
+			+ notLoaded + " skipped in unloaded chunks, backlog: " + priority.size() + " in changed chunks, "
+			+ Math.max(0, Barrel.barrels.size() - sweepIndex) + " left in this sweep, last full sweep took: " + lastSweep;
+	}
+}
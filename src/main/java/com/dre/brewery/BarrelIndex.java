@@ -0,0 +1,185 @@
+package com.dre.brewery;
+
+import com.dre.brewery.utility.BUtil;
+import com.dre.brewery.utility.BoundingBox;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spatial Index of all loaded Barrels, per World and Chunk.
+ * <p>A Barrel is registered in every Chunk that its Spigot or its Bounds touch,
+ * so finding the Barrel of a Block only has to look at the few Barrels in that Chunk.
+ * <p>The Barrels of one Chunk are kept in a small array that is replaced on change,
+ * so lookups from other threads never see a half updated list.
+ */
+public class BarrelIndex {
+
+	private static final Barrel[] EMPTY = new Barrel[0];
+
+	private final Map<UUID, Map<Long, Barrel[]>> worlds = new ConcurrentHashMap<>();
+	// The world and chunks each Barrel is currently registered in
+	private final Map<Barrel, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Add a Barrel to the index, or update its chunks if it was already indexed
+	 */
+	public synchronized void add(@NotNull Barrel barrel) {
+		Entry old = entries.get(barrel);
+		Entry entry = createEntry(barrel);
+		if (old != null) {
+			if (old.equals(entry)) {
+				return;
+			}
+			unlink(barrel, old);
+		}
+		entries.put(barrel, entry);
+		Map<Long, Barrel[]> chunks = worlds.computeIfAbsent(entry.world, k -> new ConcurrentHashMap<>());
+		for (long key : entry.chunks) {
+			chunks.merge(key, new Barrel[] {barrel}, BarrelIndex::concat);
+		}
+	}
+
+	/**
+	 * Re-index a Barrel after its Bounds have changed. Does nothing if the Barrel is not indexed
+	 */
+	public void update(@NotNull Barrel barrel) {
+		if (entries.containsKey(barrel)) {
+			add(barrel);
+		}
+	}
+
+	public synchronized void remove(@NotNull Barrel barrel) {
+		Entry entry = entries.remove(barrel);
+		if (entry != null) {
+			unlink(barrel, entry);
+		}
+	}
+
+	/**
+	 * Remove all Barrels of the given World from the index
+	 */
+	public synchronized void removeWorld(@NotNull UUID world) {
+		worlds.remove(world);
+		entries.values().removeIf(entry -> entry.world.equals(world));
+	}
+
+	public synchronized void clear() {
+		worlds.clear();
+		entries.clear();
+	}
+
+	public boolean hasDataInWorld(@NotNull World world) {
+		Map<Long, Barrel[]> chunks = worlds.get(world.getUID());
+		return chunks != null && !chunks.isEmpty();
+	}
+
+	/**
+	 * Get all Barrels that have a Block in the Chunk of the given Block.
+	 * <p>The returned array must not be modified
+	 */
+	@NotNull
+	public Barrel[] getCandidates(@NotNull Block block) {
+		Map<Long, Barrel[]> chunks = worlds.get(block.getWorld().getUID());
+		if (chunks == null) {
+			return EMPTY;
+		}
+		Barrel[] inChunk = chunks.get(BUtil.chunkKey(block.getX() >> 4, block.getZ() >> 4));
+		return inChunk != null ? inChunk : EMPTY;
+	}
+
+	/**
+	 * Get all Barrels that have a Block in this Chunk.
+	 * <p>The returned array must not be modified
+	 */
+	@NotNull
+	public Barrel[] getInChunk(@NotNull UUID world, int chunkX, int chunkZ) {
+		Map<Long, Barrel[]> chunks = worlds.get(world);
+		if (chunks == null) {
+			return EMPTY;
+		}
+		Barrel[] inChunk = chunks.get(BUtil.chunkKey(chunkX, chunkZ));
+		return inChunk != null ? inChunk : EMPTY;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	private void unlink(Barrel barrel, Entry entry) {
+		Map<Long, Barrel[]> chunks = worlds.get(entry.world);
+		if (chunks == null) {
+			return;
+		}
+		for (long key : entry.chunks) {
+			chunks.computeIfPresent(key, (k, inChunk) -> without(inChunk, barrel));
+		}
+		if (chunks.isEmpty()) {
+			worlds.remove(entry.world, chunks);
+		}
+	}
+
+	private static Entry createEntry(Barrel barrel) {
+		Block spigot = barrel.getSpigot();
+		int spigotX = spigot.getX() >> 4;
+		int spigotZ = spigot.getZ() >> 4;
+		int minX = spigotX, maxX = spigotX, minZ = spigotZ, maxZ = spigotZ;
+
+		BoundingBox bounds = barrel.getBody().getBounds();
+		// New Barrels start with empty bounds until they are checked, those are not useful here
+		if (!BarrelBody.boundsSeemBad(bounds)) {
+			minX = Math.min(minX, bounds.getMinX() >> 4);
+			maxX = Math.max(maxX, bounds.getMaxX() >> 4);
+			minZ = Math.min(minZ, bounds.getMinZ() >> 4);
+			maxZ = Math.max(maxZ, bounds.getMaxZ() >> 4);
+		}
+
+		long[] chunks = new long[(maxX - minX + 1) * (maxZ - minZ + 1)];
+		int i = 0;
+		for (int x = minX; x <= maxX; x++) {
+			for (int z = minZ; z <= maxZ; z++) {
+				chunks[i++] = BUtil.chunkKey(x, z);
+			}
+		}
+		return new Entry(spigot.getWorld().getUID(), chunks);
+	}
+
+	private static Barrel[] concat(Barrel[] a, Barrel[] b) {
+		Barrel[] result = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, result, a.length, b.length);
+		return result;
+	}
+
+	// Returns null if the array would be empty, which removes the chunk from the map
+	private static Barrel[] without(Barrel[] inChunk, Barrel barrel) {
+		for (int i = 0; i < inChunk.length; i++) {
+			if (inChunk[i] == barrel) {
+				if (inChunk.length == 1) {
+					return null;
+				}
+				Barrel[] result = new Barrel[inChunk.length - 1];
+				System.arraycopy(inChunk, 0, result, 0, i);
+				System.arraycopy(inChunk, i + 1, result, i, inChunk.length - i - 1);
+				return result;
+			}
+		}
+		return inChunk;
+	}
+
+	private record Entry(UUID world, long[] chunks) {
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Entry other && world.equals(other.world) && Arrays.equals(chunks, other.chunks);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * world.hashCode() + Arrays.hashCode(chunks);
+		}
+	}
+}
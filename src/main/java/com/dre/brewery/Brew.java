@@ -1,5 +1,6 @@
 package com.dre.brewery;
 
+import com.dre.brewery.api.events.brew.BrewBatchModifyEvent;
 import com.dre.brewery.api.events.brew.BrewModifyEvent;
 import com.dre.brewery.filedata.BConfig;
 import com.dre.brewery.filedata.ConfigUpdater;
@@ -28,6 +29,7 @@ import java.security.InvalidKeyException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -43,6 +45,7 @@ public class Brew implements Cloneable {
 	private static List<Long> prevSaveSeeds = new ArrayList<>(); // Save Seeds that have been used in the past, stored to decode brews made at that time
 	public static Map<Integer, Brew> legacyPotions = new HashMap<>();
 	public static long installTime = System.currentTimeMillis(); // plugin install time in millis after epoch
+	private static final BrewCache cache = new BrewCache(); // Decoded Brews by their NBT data
 
 	private BIngredients ingredients;
 	private int quality;
@@ -243,11 +246,10 @@ public class Brew implements Cloneable {
 	public boolean setRecipeFromString(String name) {
 		currentRecipe = null;
 		if (name != null && !name.equals("")) {
-			for (BRecipe recipe : BRecipe.getAllRecipes()) {
-				if (recipe.getRecipeName().equalsIgnoreCase(name)) {
-					currentRecipe = recipe;
-					return true;
-				}
+			BRecipe recipe = BRecipe.get(name);
+			if (recipe != null) {
+				currentRecipe = recipe;
+				return true;
 			}
 
 			if (quality > 0) {
@@ -695,7 +697,117 @@ public class Brew implements Cloneable {
 	public void age(ItemStack item, float time, byte woodType) {
 		if (immutable) return;
 		PotionMeta potionMeta = (PotionMeta) item.getItemMeta();
+		ageMeta(potionMeta, item, time, woodType);
+		BrewModifyEvent modifyEvent = new BrewModifyEvent(this, potionMeta, BrewModifyEvent.Type.AGE);
+		BreweryPlugin.getInstance().getServer().getPluginManager().callEvent(modifyEvent);
+		if (modifyEvent.isCancelled()) {
+			// As the brew and everything connected to it is only saved on the meta from now on,
+			// not saving the brew into potionMeta is enough to not change anything in case of cancel
+			return;
+		}
+		save(potionMeta);
+		item.setItemMeta(potionMeta);
+	}
+
+	/**
+	 * Age all Brews in these items, like they were in a Barrel for this time.
+	 * <p>Items with the same meta hold the same Brew, so it is aged once and the aged meta is applied to all of them.
+	 * The BrewModifyEvent is called once per distinct Brew if anyone listens to it,
+	 * then one BrewBatchModifyEvent for all of them.
+	 *
+	 * @param items The items to age in place, anything that is not a Brew is skipped
+	 * @param maxBrews How many Brews to age at most, in the order of the items, or -1 for all
+	 * @return The number of Brews that are not static, including those over maxBrews
+	 */
+	public static int ageAll(ItemStack[] items, float time, byte woodType, int maxBrews) {
+		// Grouped by the meta before aging, in the order of the items
+		Map<ItemMeta, AgeGroup> groups = new LinkedHashMap<>();
+		int brews = 0;
+		for (ItemStack item : items) {
+			if (item == null || item.getType() != Material.POTION || !item.hasItemMeta()) {
+				continue;
+			}
+			ItemMeta meta = item.getItemMeta();
+			AgeGroup group = groups.get(meta);
+			if (group == null) {
+				Brew brew = get(item);
+				group = new AgeGroup(brew != null && !brew.isStatic() ? brew : null);
+				groups.put(meta, group);
+			}
+			if (group.brew == null) {
+				continue;
+			}
+			if (brews < maxBrews || maxBrews < 0) {
+				group.items.add(item);
+			}
+			brews++;
+		}
 
+		boolean modifyListeners = BrewModifyEvent.getHandlerList().getRegisteredListeners().length > 0;
+		List<AgeGroup> aged = new ArrayList<>(groups.size());
+		for (AgeGroup group : groups.values()) {
+			if (group.brew == null || group.items.isEmpty()) {
+				continue;
+			}
+			ItemStack first = group.items.get(0);
+			group.meta = (PotionMeta) first.getItemMeta();
+			group.brew.ageMeta(group.meta, first, time, woodType);
+			if (modifyListeners) {
+				BrewModifyEvent modifyEvent = new BrewModifyEvent(group.brew, group.meta, BrewModifyEvent.Type.AGE);
+				BreweryPlugin.getInstance().getServer().getPluginManager().callEvent(modifyEvent);
+				if (modifyEvent.isCancelled()) {
+					continue;
+				}
+			}
+			aged.add(group);
+		}
+		if (aged.isEmpty()) {
+			return brews;
+		}
+
+		List<Brew> agedBrews = new ArrayList<>(aged.size());
+		List<ItemMeta> agedMetas = new ArrayList<>(aged.size());
+		for (AgeGroup group : aged) {
+			agedBrews.add(group.brew);
+			agedMetas.add(group.meta);
+		}
+		BrewBatchModifyEvent batchEvent = new BrewBatchModifyEvent(agedBrews, agedMetas, BrewModifyEvent.Type.AGE);
+		BreweryPlugin.getInstance().getServer().getPluginManager().callEvent(batchEvent);
+		if (batchEvent.isCancelled()) {
+			return brews;
+		}
+
+		for (AgeGroup group : aged) {
+			group.brew.save(group.meta);
+			ItemStack first = group.items.get(0);
+			for (ItemStack item : group.items) {
+				item.setItemMeta(group.meta);
+				if (VERSION.isOrEarlier(MinecraftVersion.V1_8)) {
+					// The color is in the durability
+					item.setDurability(first.getDurability());
+				}
+			}
+		}
+		return brews;
+	}
+
+	/**
+	 * Items with the same Brew, aged together
+	 */
+	private static class AgeGroup {
+		private final Brew brew; // null if not aged
+		private final List<ItemStack> items = new ArrayList<>();
+		private PotionMeta meta;
+
+		private AgeGroup(Brew brew) {
+			this.brew = brew;
+		}
+	}
+
+	/**
+	 * Age this Brew and show it on the meta, without saving it into the meta
+	 */
+	private void ageMeta(PotionMeta potionMeta, ItemStack item, float time, byte woodType) {
 		BrewLore lore = new BrewLore(this, potionMeta);
 		ageTime += time;
 
@@ -751,15 +863,6 @@ public class Brew implements Cloneable {
 		}
 		lore.write();
 		touch();
-		BrewModifyEvent modifyEvent = new BrewModifyEvent(this, potionMeta, BrewModifyEvent.Type.AGE);
-		BreweryPlugin.getInstance().getServer().getPluginManager().callEvent(modifyEvent);
-		if (modifyEvent.isCancelled()) {
-			// As the brew and everything connected to it is only saved on the meta from now on,
-			// not saving the brew into potionMeta is enough to not change anything in case of cancel
-			return;
-		}
-		save(potionMeta);
-		item.setItemMeta(potionMeta);
 	}
 
 	/**
@@ -882,10 +985,16 @@ public class Brew implements Cloneable {
 
 	private static Brew load(ItemMeta meta) {
 		InputStream itemLoadStream = null;
+		byte[] nbtData = null;
 		if (BreweryPlugin.useNBT) {
 			// Try loading the Item Data from PersistentDataContainer
 			NBTLoadStream nbtStream = new NBTLoadStream(meta);
 			if (nbtStream.hasData()) {
+				nbtData = nbtStream.getData();
+				Brew cached = cache.get(nbtData);
+				if (cached != null) {
+					return cached;
+				}
 				itemLoadStream = nbtStream;
 			}
 		}
@@ -938,6 +1047,9 @@ public class Brew implements Cloneable {
 				BreweryPlugin.getInstance().debugLog("Converting Brew to NBT");
 				brew.setNeedsSave(true);
 			}
+			if (nbtData != null && !brew.needsSave) {
+				cache.put(nbtData, brew);
+			}
 			return brew;
 		} catch (IOException e) {
 			BreweryPlugin.getInstance().errorLog("IO Error while loading Brew");
@@ -981,8 +1093,10 @@ public class Brew implements Cloneable {
 	 */
 	public void save(ItemMeta meta) {
 		OutputStream itemSaveStream;
+		NBTSaveStream nbtStream = null;
 		if (BreweryPlugin.useNBT) {
-			itemSaveStream = new NBTSaveStream(meta);
+			nbtStream = new NBTSaveStream(meta);
+			itemSaveStream = nbtStream;
 		} else {
 			itemSaveStream = new Base91EncoderStream(new LoreSaveStream(meta, 0));
 		}
@@ -1000,6 +1114,11 @@ public class Brew implements Cloneable {
 		} catch (IOException e) {
 			BreweryPlugin.getInstance().errorLog("IO Error while saving Brew");
 			e.printStackTrace();
+			return;
+		}
+		if (nbtStream != null) {
+			// The item will most likely be loaded again soon, so we already know what its data decodes to
+			cache.put(nbtStream.toByteArray(), this);
 		}
 	}
 
@@ -1057,6 +1176,7 @@ public class Brew implements Cloneable {
 	}
 
 	public static void loadPrevSeeds(ConfigurationSection section) {
+		cache.invalidate();
 		if (section.contains("prevSaveSeeds")) {
 			prevSaveSeeds = section.getLongList("prevSaveSeeds");
 			if (!prevSaveSeeds.contains(saveSeed)) {
@@ -1072,6 +1192,7 @@ public class Brew implements Cloneable {
 	}
 
 	public static void loadPrevSeeds(List<Long> list) {
+		cache.invalidate();
 		prevSaveSeeds = list;
 		if (!prevSaveSeeds.contains(saveSeed)) {
 			prevSaveSeeds.add(saveSeed);
@@ -1082,8 +1203,16 @@ public class Brew implements Cloneable {
 		return prevSaveSeeds;
 	}
 
+	/**
+	 * The cache of decoded Brews
+	 */
+	public static BrewCache getCache() {
+		return cache;
+	}
+
 
 	public static void loadSeed(ConfigurationSection config, File file) {
+		cache.invalidate();
 		saveSeed = config.getLong("encodeKey", 0);
 		if (saveSeed == 0) {
 			while (saveSeed == 0) {
@@ -0,0 +1,109 @@
+package com.dre.brewery;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU Cache of decoded Brews, keyed by the raw brew data stored in the NBT of the Item.
+ * <p>Loading a Brew from an Item means unscrambling and parsing its data and looking up its recipe,
+ * which is done on every click, hopper move, drink and barrel open. Items with the same data
+ * are always the same Brew, so we can skip all of that for data we have seen before.
+ * <p>The cache only holds private snapshots and hands out clones, as Brews are modified by their users.
+ * <p>The size is limited by the total amount of brew data stored, not by the number of entries.
+ */
+public class BrewCache {
+
+	private static final long MAX_WEIGHT = 2 * 1024 * 1024; // Max bytes of brew data held
+	private static final int ENTRY_WEIGHT = 96; // Estimated size of each entry without the data
+
+	private final LinkedHashMap<Key, Brew> entries = new LinkedHashMap<>(256, 0.75f, true);
+	private long weight;
+	private int generation; // Changes whenever cached Brews become invalid, i.e. on reload or seed change
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Get a copy of the Brew that was decoded from this data
+	 *
+	 * @param data The raw brew data of the item
+	 * @return A new copy of the cached Brew, or null if not cached
+	 */
+	@Nullable
+	public synchronized Brew get(byte[] data) {
+		Brew brew = entries.get(new Key(data, generation));
+		if (brew == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return brew.clone();
+	}
+
+	/**
+	 * Remember the Brew for the data it was decoded from or saved to
+	 */
+	public synchronized void put(byte[] data, Brew brew) {
+		Brew snapshot = brew.clone();
+		// The data the snapshot belongs to is in the current format
+		snapshot.setNeedsSave(false);
+
+		// Copy the data, the caller may still change the array
+		Brew previous = entries.put(new Key(data.clone(), generation), snapshot);
+		if (previous == null) {
+			weight += data.length + ENTRY_WEIGHT;
+		}
+
+		Iterator<Map.Entry<Key, Brew>> iter = entries.entrySet().iterator();
+		while (weight > MAX_WEIGHT && iter.hasNext()) {
+			Key eldest = iter.next().getKey();
+			iter.remove();
+			weight -= eldest.data.length + ENTRY_WEIGHT;
+			evictions++;
+		}
+	}
+
+	/**
+	 * Drop all cached Brews, after recipes or encoding seeds changed
+	 */
+	public synchronized void invalidate() {
+		generation++;
+		entries.clear();
+		weight = 0;
+	}
+
+	public synchronized String getStats() {
+		long total = hits + misses;
+		float hitRate = total == 0 ? 0 : (float) hits / total * 100;
+		return "Brew Cache: " + entries.size() + " entries (" + (weight / 1024) + "kB), hits: " + hits + ", misses: " + misses
+			+ String.format(" (%.1f%% hit rate)", hitRate) + ", evictions: " + evictions;
+	}
+
+	private static final class Key {
+		private final byte[] data;
+		private final int generation;
+		private final int hash;
+
+		private Key(byte[] data, int generation) {
+			this.data = data;
+			this.generation = generation;
+			this.hash = 31 * Arrays.hashCode(data) + generation;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Key other)) return false;
+			return hash == other.hash && generation == other.generation && Arrays.equals(data, other.data);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
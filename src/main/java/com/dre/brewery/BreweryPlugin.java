@@ -31,6 +31,7 @@ import com.dre.brewery.integration.ChestShopListener;
 import com.dre.brewery.integration.IntegrationListener;
 import com.dre.brewery.integration.ShopKeepersListener;
 import com.dre.brewery.integration.SlimefunListener;
+import com.dre.brewery.integration.WorldEditListener;
 import com.dre.brewery.integration.barrel.BlocklockerBarrel;
 import com.dre.brewery.integration.barrel.LogBlockBarrel;
 import com.dre.brewery.integration.papi.PlaceholderAPI;
@@ -39,12 +40,15 @@ import com.dre.brewery.listeners.CauldronListener;
 import com.dre.brewery.listeners.EntityListener;
 import com.dre.brewery.listeners.InventoryListener;
 import com.dre.brewery.listeners.PlayerListener;
+import com.dre.brewery.listeners.WorldListener;
 import com.dre.brewery.recipe.BCauldronRecipe;
 import com.dre.brewery.recipe.BRecipe;
+import com.dre.brewery.recipe.CauldronRecipeMatcher;
 import com.dre.brewery.recipe.CustomItem;
 import com.dre.brewery.recipe.Ingredient;
 import com.dre.brewery.recipe.ItemLoader;
 import com.dre.brewery.recipe.PluginItem;
+import com.dre.brewery.recipe.RecipeItemIndex;
 import com.dre.brewery.recipe.SimpleItem;
 import com.dre.brewery.storage.DataManager;
 import com.dre.brewery.storage.StorageInitException;
@@ -159,23 +163,8 @@ public class BreweryPlugin extends JavaPlugin {
 			Bukkit.getPluginManager().disablePlugin(this);
         }
 
-		DataManager.loadMiscData(dataManager.getBreweryMiscData());
-		Barrel.getBarrels().addAll(dataManager.getAllBarrels());
-		// Stream error? - https://gist.github.com/TomLewis/413212bd3df6cb745412475128e01e92w
-		// Apparently there's 2 CraftBlocks trying to be put under the same identifier in the map and it's throwing an err
-		// I'll fix the stream issues in the next version but I have to release this fix ASAP so I'm leaving it like this for now. - Jsinco
-
-		/*
-		BCauldron.getBcauldrons().putAll(dataManager.getAllCauldrons().stream().collect(Collectors.toMap(BCauldron::getBlock, Function.identity())));
-		BPlayer.getPlayers().putAll(dataManager.getAllPlayers().stream().collect(Collectors.toMap(BPlayer::getUuid, Function.identity())));
-		 */
-		for (BCauldron cauldron : dataManager.getAllCauldrons()) {
-			BCauldron.getBcauldrons().put(cauldron.getBlock(), cauldron);
-		}
-		for (BPlayer player : dataManager.getAllPlayers()) {
-			BPlayer.getPlayers().put(player.getUuid(), player);
-		}
-		Wakeup.getWakeups().addAll(dataManager.getAllWakeups());
+		// Loads in the background if loadDataAsync, Barrels and Cauldrons can't be used until it is done
+		dataManager.loadAll();
 
 
 		// Setup Metrics
@@ -191,6 +180,9 @@ public class BreweryPlugin extends JavaPlugin {
 		getServer().getPluginManager().registerEvents(new EntityListener(), this);
 		getServer().getPluginManager().registerEvents(new InventoryListener(), this);
 		getServer().getPluginManager().registerEvents(new IntegrationListener(), this);
+		if (BConfig.lazyBarrels) {
+			getServer().getPluginManager().registerEvents(new WorldListener(), this);
+		}
 		if (getMCVersion().isOrLater(MinecraftVersion.V1_9)) {
 			getServer().getPluginManager().registerEvents(new CauldronListener(), this);
 		}
@@ -203,13 +195,25 @@ public class BreweryPlugin extends JavaPlugin {
 		if (BConfig.hasSlimefun && getMCVersion().isOrLater(MinecraftVersion.V1_14)) {
 			getServer().getPluginManager().registerEvents(new SlimefunListener(), this);
 		}
+		if (BConfig.hasWorldEdit) {
+			try {
+				WorldEditListener.register();
+			} catch (NoClassDefFoundError e) {
+				// Only WorldEdit 7 and later have edit session events
+				debugLog("WorldEdit version not supported, Barrels changed with it are found by the Barrel check later");
+			}
+		}
 
 		// Heartbeat
 		BreweryPlugin.getScheduler().runTaskTimer(new BreweryRunnable(), 650, 1200);
 		BreweryPlugin.getScheduler().runTaskTimer(new DrunkRunnable(), 120, 120);
+		BreweryPlugin.getScheduler().runTaskTimer(BarrelChecker.getInstance(), 1, 1);
+		if (BConfig.enableJournal) {
+			BreweryPlugin.getScheduler().runTaskTimer(dataManager::flushJournal, 20, 20);
+		}
 
 		if (getMCVersion().isOrLater(MinecraftVersion.V1_9)) {
-			BreweryPlugin.getScheduler().runTaskTimer(new CauldronParticles(), 1, 1);
+			BreweryPlugin.getScheduler().runTaskTimer(CauldronParticles.getInstance(), 1, 1);
 		}
 
 
@@ -333,15 +337,19 @@ public class BreweryPlugin extends JavaPlugin {
 	public void clearConfigData() {
 		BRecipe.getConfigRecipes().clear();
 		BRecipe.numConfigRecipes = 0;
+		BRecipe.invalidateIndex();
 		BCauldronRecipe.acceptedMaterials.clear();
 		BCauldronRecipe.acceptedCustom.clear();
 		BCauldronRecipe.acceptedSimple.clear();
+		RecipeItemIndex.invalidate();
 		BCauldronRecipe.getConfigRecipes().clear();
 		BCauldronRecipe.numConfigRecipes = 0;
+		CauldronRecipeMatcher.invalidate();
 		BConfig.customItems.clear();
 		BConfig.hasMMOItems = null;
 		DistortChat.commands = null;
 		BConfig.drainItems.clear();
+		Brew.getCache().invalidate();
 		if (BConfig.useLB) {
 			try {
 				LogBlockBarrel.clear();
@@ -492,14 +500,7 @@ public class BreweryPlugin extends JavaPlugin {
 			BConfig.reloader = null;
 
             // runs every min to update cooking time
-
-			for (BCauldron bCauldron : BCauldron.bcauldrons.values()) {
-				BreweryPlugin.getScheduler().runTask(bCauldron.getBlock().getLocation(), () -> {
-					if (!bCauldron.onUpdate()) {
-						BCauldron.bcauldrons.remove(bCauldron.getBlock());
-					}
-				});
-			}
+			BCauldron.onUpdateAll();
 
 
 			Barrel.onUpdate();// runs every min to check and update ageing time
@@ -518,15 +519,4 @@ public class BreweryPlugin extends JavaPlugin {
 
 	}
 
-	public static class CauldronParticles implements Runnable {
-		@Override
-		public void run() {
-			if (!BConfig.enableCauldronParticles) return;
-			if (BConfig.minimalParticles && BCauldron.particleRandom.nextFloat() > 0.5f) {
-				return;
-			}
-			BCauldron.processCookEffects();
-		}
-	}
-
 }
@@ -0,0 +1,185 @@
+package com.dre.brewery;
+
+import com.dre.brewery.filedata.BConfig;
+import com.dre.brewery.utility.BUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.util.BoundingBox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spawns the particles of cooking Cauldrons every tick.
+ * <p>Only Cauldrons that were heated in a loaded chunk at their last update are active, see {@link BCauldron#onUpdate()}.
+ * They are kept by chunk, and a chunk is skipped as a whole if it is not loaded or no player is close enough to see its particles.
+ */
+public class CauldronParticles implements Runnable {
+
+	private static final int PARTICLE_RANGE = 32; // The client only shows particles this close
+	private static final double PARTICLE_RANGE_SQUARED = PARTICLE_RANGE * PARTICLE_RANGE;
+
+	private static final CauldronParticles instance = new CauldronParticles();
+
+	// Active Cauldrons by world and BUtil.chunkKey. Changed from the region threads on Folia
+	private final Map<UUID, Map<Long, Set<BCauldron>>> active = new ConcurrentHashMap<>();
+	// x and z of the players in the world we are at, reused every tick
+	private double[] viewers = new double[16];
+	private final Location viewerLocation = new Location(null, 0, 0, 0);
+
+	private CauldronParticles() {
+	}
+
+	public static CauldronParticles getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Set if this Cauldron is heated in a loaded chunk, and should spawn particles
+	 */
+	public void setActive(BCauldron cauldron, boolean isActive) {
+		Block block = cauldron.getBlock();
+		UUID world = block.getWorld().getUID();
+		long chunk = BUtil.chunkKey(block.getX() >> 4, block.getZ() >> 4);
+		if (isActive) {
+			active.computeIfAbsent(world, uid -> new ConcurrentHashMap<>()).compute(chunk, (key, cauldrons) -> {
+				if (cauldrons == null) {
+					cauldrons = ConcurrentHashMap.newKeySet();
+				}
+				cauldrons.add(cauldron);
+				return cauldrons;
+			});
+		} else {
+			Map<Long, Set<BCauldron>> inWorld = active.get(world);
+			if (inWorld != null) {
+				inWorld.computeIfPresent(chunk, (key, cauldrons) -> {
+					cauldrons.remove(cauldron);
+					return cauldrons.isEmpty() ? null : cauldrons;
+				});
+			}
+		}
+	}
+
+	/**
+	 * Remove the Cauldrons of all worlds that are not loaded anymore
+	 */
+	public void unloadWorlds() {
+		active.keySet().removeIf(world -> Bukkit.getWorld(world) == null);
+	}
+
+	public void onUnload(World world) {
+		active.remove(world.getUID());
+	}
+
+	@Override
+	public void run() {
+		if (!BConfig.enableCauldronParticles || active.isEmpty()) return;
+		if (BConfig.minimalParticles && BCauldron.particleRandom.nextFloat() > 0.5f) {
+			return;
+		}
+		final float chance = 1f / BCauldron.PARTICLEPAUSE;
+
+		for (Map.Entry<UUID, Map<Long, Set<BCauldron>>> entry : active.entrySet()) {
+			if (entry.getValue().isEmpty()) continue;
+			World world = Bukkit.getWorld(entry.getKey());
+			if (world == null) continue;
+
+			if (BreweryPlugin.isFolia()) {
+				runFolia(world, entry.getValue(), chance);
+				continue;
+			}
+
+			int viewerCount = collectViewers(world);
+			if (viewerCount == 0) continue;
+			for (Map.Entry<Long, Set<BCauldron>> chunk : entry.getValue().entrySet()) {
+				int chunkX = (int) (chunk.getKey() >> 32);
+				int chunkZ = (int) (long) chunk.getKey();
+				if (!hasViewer(viewerCount, chunkX, chunkZ) || !world.isChunkLoaded(chunkX, chunkZ)) {
+					continue;
+				}
+				for (BCauldron cauldron : chunk.getValue()) {
+					if (BCauldron.particleRandom.nextFloat() < chance) {
+						cauldron.spawnCookParticles();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Players and blocks can only be accessed on the thread of their region,
+	 * so each chunk that has Cauldrons spawning particles in this tick gets one task that checks for players there
+	 */
+	private void runFolia(World world, Map<Long, Set<BCauldron>> chunks, float chance) {
+		for (Map.Entry<Long, Set<BCauldron>> chunk : chunks.entrySet()) {
+			List<BCauldron> spawning = null;
+			for (BCauldron cauldron : chunk.getValue()) {
+				if (BCauldron.particleRandom.nextFloat() < chance) {
+					if (spawning == null) {
+						spawning = new ArrayList<>(2);
+					}
+					spawning.add(cauldron);
+				}
+			}
+			if (spawning == null) continue;
+
+			int chunkX = (int) (chunk.getKey() >> 32);
+			int chunkZ = (int) (long) chunk.getKey();
+			List<BCauldron> cauldrons = spawning;
+			BreweryPlugin.getScheduler().runTask(cauldrons.get(0).getBlock().getLocation(), () -> {
+				if (!world.isChunkLoaded(chunkX, chunkZ)) return;
+				BoundingBox range = new BoundingBox(
+					(chunkX << 4) - PARTICLE_RANGE, world.getMinHeight(), (chunkZ << 4) - PARTICLE_RANGE,
+					(chunkX << 4) + 16 + PARTICLE_RANGE, world.getMaxHeight(), (chunkZ << 4) + 16 + PARTICLE_RANGE);
+				if (!world.getNearbyEntities(range, entity -> entity instanceof Player).isEmpty()) {
+					cauldrons.forEach(BCauldron::spawnCookParticles);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Store the position of all players in this world
+	 *
+	 * @return the amount of players
+	 */
+	private int collectViewers(World world) {
+		List<Player> players = world.getPlayers();
+		if (players.isEmpty()) {
+			return 0;
+		}
+		if (viewers.length < players.size() * 2) {
+			viewers = new double[players.size() * 4];
+		}
+		int i = 0;
+		for (Player player : players) {
+			player.getLocation(viewerLocation);
+			viewers[i++] = viewerLocation.getX();
+			viewers[i++] = viewerLocation.getZ();
+		}
+		return players.size();
+	}
+
+	/**
+	 * Is any of the players horizontally within particle range of the chunk
+	 */
+	private boolean hasViewer(int viewerCount, int chunkX, int chunkZ) {
+		double minX = chunkX << 4;
+		double minZ = chunkZ << 4;
+		for (int i = 0; i < viewerCount * 2; i += 2) {
+			double dx = Math.max(0, Math.max(minX - viewers[i], viewers[i] - (minX + 16)));
+			double dz = Math.max(0, Math.max(minZ - viewers[i + 1], viewers[i + 1] - (minZ + 16)));
+			if (dx * dx + dz * dz <= PARTICLE_RANGE_SQUARED) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
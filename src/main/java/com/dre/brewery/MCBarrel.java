@@ -1,5 +1,7 @@
 package com.dre.brewery;
 
+import com.dre.brewery.utility.BUtil;
+import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
 import org.bukkit.block.Barrel;
@@ -11,8 +13,9 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.persistence.PersistentDataContainer;
 import org.bukkit.persistence.PersistentDataType;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MCBarrel {
 
@@ -22,7 +25,8 @@ public class MCBarrel {
 	public static boolean enableAging = true;
 
 	public static long mcBarrelTime; // Globally stored Barrel time. Difference between this and the time stored on each mc-barrel will give the barrel age time
-	public static List<MCBarrel> openBarrels = new ArrayList<>();
+	// Barrels that are open, by world and by BUtil.blockKey
+	private static final Map<UUID, Map<Long, MCBarrel>> openBarrels = new ConcurrentHashMap<>();
 
 	private byte brews = -1; // How many Brewery Brews are in this Barrel
 	private final Inventory inv;
@@ -34,6 +38,40 @@ public class MCBarrel {
 		invSize = inv.getSize();
 	}
 
+	/**
+	 * Get the MCBarrel of an open Barrel Inventory, it is kept until its last viewer closes it
+	 */
+	public static MCBarrel getOpen(Inventory inv) {
+		Location loc = inv.getLocation();
+		if (loc == null || loc.getWorld() == null) {
+			// Not the Inventory of a Block, nothing to keep track of
+			return new MCBarrel(inv);
+		}
+		Map<Long, MCBarrel> inWorld = openBarrels.computeIfAbsent(loc.getWorld().getUID(), uid -> new ConcurrentHashMap<>());
+		long key = BUtil.blockKey(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+		MCBarrel barrel = inWorld.get(key);
+		if (barrel == null || !barrel.inv.equals(inv)) {
+			// Not open yet, or the Block was replaced
+			barrel = new MCBarrel(inv);
+			inWorld.put(key, barrel);
+		}
+		return barrel;
+	}
+
+	/**
+	 * Stop keeping track of an open Barrel Inventory
+	 */
+	public static void removeOpen(Inventory inv) {
+		Location loc = inv.getLocation();
+		if (loc == null || loc.getWorld() == null) {
+			return;
+		}
+		Map<Long, MCBarrel> inWorld = openBarrels.get(loc.getWorld().getUID());
+		if (inWorld != null) {
+			inWorld.remove(BUtil.blockKey(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()));
+		}
+	}
+
 
 	// Now Opening this Barrel for a player
 	public void open() {
@@ -62,18 +100,8 @@ public class MCBarrel {
 				// if inventory contains potions
 				if (inv.contains(Material.POTION)) {
 					long loadTime = System.nanoTime();
-					for (ItemStack item : inv.getContents()) {
-						if (item != null) {
-							Brew brew = Brew.get(item);
-							if (brew != null && !brew.isStatic()) {
-								if (brews < maxBrews || maxBrews < 0) {
-									// The time is in minutes, but brew.age() expects time in mc-days
-									brew.age(item, ((float) time) / 20f, OAK);
-								}
-								brews++;
-							}
-						}
-					}
+					// The time is in minutes, but aging expects time in mc-days
+					brews = (byte) Brew.ageAll(inv.getContents(), ((float) time) / 20f, OAK, maxBrews);
 					if (BreweryPlugin.debug) {
 						loadTime = System.nanoTime() - loadTime;
 						float ftime = (float) (loadTime / 1000000.0);
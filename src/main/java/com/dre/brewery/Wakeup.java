@@ -1,5 +1,6 @@
 package com.dre.brewery;
 
+import com.dre.brewery.storage.DataManager;
 import com.dre.brewery.utility.BUtil;
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -24,10 +25,12 @@ public class Wakeup {
 	private final Location loc;
 	private final UUID id;
 	private boolean active = true;
+	private boolean needsSave; // Created since the last save
 
 	public Wakeup(Location loc) {
 		this.loc = loc;
 		this.id = UUID.randomUUID();
+		setNeedsSave(true);
 	}
 
 	// load from save data
@@ -44,6 +47,21 @@ public class Wakeup {
 		return id;
 	}
 
+	public boolean isActive() {
+		return active;
+	}
+
+	public boolean needsSave() {
+		return needsSave;
+	}
+
+	public void setNeedsSave(boolean needsSave) {
+		this.needsSave = needsSave;
+		if (needsSave) {
+			DataManager.markChanged(this);
+		}
+	}
+
 	public static List<Wakeup> getWakeups() {
 		return wakeups;
 	}
@@ -128,6 +146,7 @@ public class Wakeup {
 
 		if (wakeup.active) {
 			wakeup.active = false;
+			DataManager.markRemoved(wakeup);
 			breweryPlugin.msg(sender, breweryPlugin.languageReader.get("Player_WakeDeleted", "" + id));
 
 		} else {
@@ -5,6 +5,7 @@ import com.dre.brewery.BPlayer;
 import com.dre.brewery.filedata.BConfig;
 import com.dre.brewery.recipe.BCauldronRecipe;
 import com.dre.brewery.recipe.BRecipe;
+import com.dre.brewery.recipe.CauldronRecipeMatcher;
 import com.dre.brewery.Barrel;
 import com.dre.brewery.Brew;
 import org.bukkit.block.Block;
@@ -359,6 +360,8 @@ public class BreweryApi {
 		}
 		BRecipe.getAddedRecipes().add(recipe);
 		recipe.updateAcceptedLists();
+		BRecipe.invalidateIndex();
+		Brew.getCache().invalidate();
 	}
 
 	/**
@@ -378,6 +381,8 @@ public class BreweryApi {
 					// We removed one of the Config Recipes
 					BRecipe.numConfigRecipes--;
 				}
+				BRecipe.invalidateIndex();
+				Brew.getCache().invalidate();
 				return remove;
 			}
 		}
@@ -427,6 +432,7 @@ public class BreweryApi {
 		}
 		BCauldronRecipe.getAddedRecipes().add(recipe);
 		recipe.updateAcceptedLists();
+		CauldronRecipeMatcher.invalidate();
 	}
 
 	/**
@@ -447,6 +453,7 @@ public class BreweryApi {
 					// We removed one of the Config Recipes
 					BCauldronRecipe.numConfigRecipes--;
 				}
+				CauldronRecipeMatcher.invalidate();
 				return remove;
 			}
 		}
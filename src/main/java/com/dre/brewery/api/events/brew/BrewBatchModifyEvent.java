@@ -0,0 +1,81 @@
+package com.dre.brewery.api.events.brew;
+
+import com.dre.brewery.Brew;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Many Brews have been modified at once, like all Brews in a Barrel when it is opened.
+ * <p>Called after the BrewModifyEvent of each Brew, the Brews that were cancelled there are not included.
+ * Items with the same Brew share one entry, so each Brew is only in here once.
+ * <p>Modifications to the Brews or the ItemMetas can be done now
+ * <p>Cancelling reverts all Brews to the state they were before the modification
+ */
+public class BrewBatchModifyEvent extends Event implements Cancellable {
+	private static final HandlerList handlers = new HandlerList();
+	private final List<Brew> brews;
+	private final List<ItemMeta> metas;
+	private final BrewModifyEvent.Type type;
+	private boolean cancelled;
+
+
+	public BrewBatchModifyEvent(@NotNull List<Brew> brews, @NotNull List<ItemMeta> metas, @NotNull BrewModifyEvent.Type type) {
+		this.brews = brews;
+		this.metas = metas;
+		this.type = type;
+	}
+
+	/**
+	 * Get the modified Brews, in the same order as their ItemMetas
+	 */
+	@NotNull
+	public List<Brew> getBrews() {
+		return brews;
+	}
+
+	/**
+	 * Get the Metas of the Items the Brews are attached to, in the same order as the Brews
+	 */
+	@NotNull
+	public List<ItemMeta> getItemMetas() {
+		return metas;
+	}
+
+	/**
+	 * Get the Type of modification being applied to the Brews.
+	 */
+	@NotNull
+	public BrewModifyEvent.Type getType() {
+		return type;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Setting the Event cancelled cancels all modificatons to the brews.
+	 * <p>Modifications to the Brews or ItemMetas will not be applied
+	 */
+	@Override
+	public void setCancelled(boolean cancelled) {
+		this.cancelled = cancelled;
+	}
+
+	@NotNull
+	@Override
+	public HandlerList getHandlers() {
+		return handlers;
+	}
+
+	// Required by Bukkit
+	public static HandlerList getHandlerList() {
+		return handlers;
+	}
+}
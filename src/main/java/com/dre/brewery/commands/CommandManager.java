@@ -40,6 +40,7 @@ public class CommandManager implements TabExecutor {
 		subCommands.put("reloadaddons", new ReloadAddonsCommand());
         subCommands.put("version", new VersionCommand());
         subCommands.put("save", new SaveCommand());
+        subCommands.put("migratedata", new MigrateDataCommand());
     }
 
     @Override
@@ -1,12 +1,16 @@
 package com.dre.brewery.commands.subcommands;
 
 import com.dre.brewery.BIngredients;
+import com.dre.brewery.BarrelChecker;
 import com.dre.brewery.Brew;
 import com.dre.brewery.BreweryPlugin;
 import com.dre.brewery.commands.SubCommand;
 import com.dre.brewery.recipe.BRecipe;
+import com.dre.brewery.recipe.CauldronRecipeMatcher;
 import com.dre.brewery.recipe.Ingredient;
 import com.dre.brewery.recipe.RecipeItem;
+import com.dre.brewery.recipe.RecipeItemIndex;
+import com.dre.brewery.recipe.RecipeMatcher;
 import com.dre.brewery.utility.MinecraftVersion;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -47,6 +51,15 @@ public class DebugInfoCommand implements SubCommand {
         if (BreweryPlugin.getMCVersion().isOrEarlier(MinecraftVersion.V1_9) || !sender.isOp()) return;
         Player player = (Player) sender;
         ItemStack hand = player.getInventory().getItemInMainHand();
+        BreweryPlugin.getInstance().log(Brew.getCache().getStats());
+        BreweryPlugin.getInstance().log(RecipeMatcher.getInstance().getStats());
+        BreweryPlugin.getInstance().log(RecipeItemIndex.getInstance().getStats());
+        BreweryPlugin.getInstance().log(CauldronRecipeMatcher.getInstance().getStats());
+        BreweryPlugin.getInstance().log(BarrelChecker.getInstance().getStats());
+        String storageStats = BreweryPlugin.getDataManager().getStats();
+        if (storageStats != null) {
+            BreweryPlugin.getInstance().log(storageStats);
+        }
         if (hand != null) {
             Brew brew = Brew.get(hand);
             if (brew == null) return;
@@ -0,0 +1,45 @@
+package com.dre.brewery.commands.subcommands;
+
+import com.dre.brewery.BreweryPlugin;
+import com.dre.brewery.commands.SubCommand;
+import org.bukkit.command.CommandSender;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Converts data stored in a database to the compact binary record format
+ */
+public class MigrateDataCommand implements SubCommand {
+    @Override
+    public void execute(BreweryPlugin breweryPlugin, CommandSender sender, String label, String[] args) {
+        if (!BreweryPlugin.getDataManager().hasRecordFormatMigration()) {
+            breweryPlugin.msg(sender, breweryPlugin.languageReader.get("CMD_MigrateData_Unsupported"));
+            return;
+        }
+        breweryPlugin.msg(sender, breweryPlugin.languageReader.get("CMD_MigrateData"));
+        BreweryPlugin.getDataManager().async().migrateRecordFormat().whenComplete((converted, e) -> {
+            if (e == null) {
+                breweryPlugin.msg(sender, breweryPlugin.languageReader.get("CMD_MigrateData_Done", String.valueOf(converted)));
+            } else {
+                breweryPlugin.errorLog("Failed to migrate data!", e instanceof CompletionException ? e.getCause() : e);
+                breweryPlugin.msg(sender, breweryPlugin.languageReader.get("CMD_MigrateData_Error"));
+            }
+        });
+    }
+
+    @Override
+    public List<String> tabComplete(BreweryPlugin breweryPlugin, CommandSender sender, String label, String[] args) {
+        return null;
+    }
+
+    @Override
+    public String permission() {
+        return "brewery.cmd.migratedata";
+    }
+
+    @Override
+    public boolean playerOnly() {
+        return false;
+    }
+}
@@ -72,12 +72,17 @@ public class BConfig {
 	public static boolean hasShopKeepers;
 	public static boolean hasOraxen;
 	public static boolean hasItemsAdder;
+	public static boolean hasWorldEdit;
 
 	// Barrel
 	public static boolean openEverywhere;
 	public static boolean loadDataAsync;
+	public static boolean lazyBarrels; // Load the contents of Barrels with their chunk
+	public static boolean enableJournal; // Journal changes between saves
 	public static boolean virtualChestPerms;
 	public static int agingYearDuration;
+	public static int barrelCheckBudget; // Microseconds per tick to check if Barrels are intact
+	public static int barrelCheckWindow; // Minutes in which all Barrels are checked
 	public static boolean requireKeywordOnSigns;
 
 	// Cauldron
@@ -192,9 +197,15 @@ public class BConfig {
 						config.getString("storage.tablePrefix", "brewery_"),
 						config.getString("storage.address"),
 						config.getString("storage.username"),
-						config.getString("storage.password")
+						config.getString("storage.password"),
+						config.getInt("storage.pool.maxSize", 4),
+						config.getLong("storage.pool.connectionTimeout", 10000),
+						config.getLong("storage.pool.maxLifetime", 1800000),
+						config.getBoolean("storage.normalizedSchema", false)
 				);
 		autoSaveInterval = config.getInt("autosave", 3);
+		lazyBarrels = config.getBoolean("storage.lazyBarrels", false);
+		enableJournal = config.getBoolean("storage.journal", true);
 
 		// Set the Language
 		breweryPlugin.language = config.getString("language", "en");
@@ -240,6 +251,7 @@ public class BConfig {
 		hasSlimefun = plMan.isPluginEnabled("Slimefun");
 		hasOraxen = plMan.isPluginEnabled("Oraxen");
 		hasItemsAdder = plMan.isPluginEnabled("ItemsAdder");
+		hasWorldEdit = plMan.isPluginEnabled("WorldEdit");
 
 		// various Settings
 		BreweryPlugin.debug = config.getBoolean("debug", false);
@@ -271,6 +283,8 @@ public class BConfig {
 		loadDataAsync = config.getBoolean("loadDataAsync", true);
 		brewHopperDump = config.getBoolean("brewHopperDump", false);
 		agingYearDuration = config.getInt("agingYearDuration", 20);
+		barrelCheckBudget = Math.max(0, config.getInt("barrelCheckBudget", 200));
+		barrelCheckWindow = Math.max(1, config.getInt("barrelCheckWindow", 10));
 		requireKeywordOnSigns = config.getBoolean("requireKeywordOnSigns", true);
 
 		if (VERSION.isOrLater(MinecraftVersion.V1_14)) {
@@ -319,6 +333,7 @@ public class BConfig {
 				}
 			}
 			BRecipe.numConfigRecipes = configRecipes.size();
+			BRecipe.invalidateIndex();
 		}
 
 		// Loading Cauldron Recipes
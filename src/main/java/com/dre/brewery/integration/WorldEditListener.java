@@ -0,0 +1,64 @@
+package com.dre.brewery.integration;
+
+import com.dre.brewery.BarrelChecker;
+import com.dre.brewery.utility.BUtil;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.event.extent.EditSessionEvent;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.util.eventbus.Subscribe;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+
+import java.util.UUID;
+
+/**
+ * Tells the BarrelChecker which chunks WorldEdit changed, so Barrels in them are checked right away.
+ * <p>WorldEdit changes blocks without any Bukkit events, so we don't notice it breaking a Barrel otherwise
+ */
+public class WorldEditListener {
+
+	public static void register() {
+		WorldEdit.getInstance().getEventBus().register(new WorldEditListener());
+	}
+
+	@Subscribe
+	public void onEditSession(EditSessionEvent event) {
+		if (event.getStage() != EditSession.Stage.BEFORE_CHANGE || event.getWorld() == null) {
+			return;
+		}
+		UUID world;
+		try {
+			world = BukkitAdapter.adapt(event.getWorld()).getUID();
+		} catch (RuntimeException e) {
+			// Not a Bukkit world
+			return;
+		}
+		event.setExtent(new ChangeTracker(event.getExtent(), world));
+	}
+
+	private static class ChangeTracker extends AbstractDelegateExtent {
+		private final UUID world;
+		private long lastChunk = Long.MIN_VALUE; // Edits mostly change many blocks in a row in the same chunk
+
+		private ChangeTracker(Extent extent, UUID world) {
+			super(extent);
+			this.world = world;
+		}
+
+		@Override
+		public <T extends BlockStateHolder<T>> boolean setBlock(BlockVector3 location, T block) throws WorldEditException {
+			int chunkX = location.getBlockX() >> 4;
+			int chunkZ = location.getBlockZ() >> 4;
+			long chunk = BUtil.chunkKey(chunkX, chunkZ);
+			if (chunk != lastChunk) {
+				lastChunk = chunk;
+				BarrelChecker.getInstance().markChanged(world, chunkX, chunkZ);
+			}
+			return super.setBlock(location, block);
+		}
+	}
+}
@@ -5,6 +5,7 @@ import com.dre.brewery.BreweryPlugin;
 import com.dre.brewery.api.events.barrel.BarrelDestroyEvent;
 import com.dre.brewery.filedata.BConfig;
 import com.dre.brewery.integration.barrel.BlocklockerBarrel;
+import com.dre.brewery.storage.DataManager;
 import com.dre.brewery.utility.BUtil;
 import com.dre.brewery.utility.MinecraftVersion;
 import org.bukkit.Material;
@@ -29,10 +30,10 @@ public class BlockListener implements Listener {
 				BreweryPlugin.getInstance().msg(player, BreweryPlugin.getInstance().languageReader.get("Perms_NoBarrelCreate"));
 				return;
 			}
-			//if (LegacyBDataLoader.dataMutex.get() > 0) { // REMOVE
-			//	BreweryPlugin.getInstance().msg(player, "§cCurrently loading Data");
-			//	return;
-			//}
+			if (DataManager.isLoading()) {
+				BreweryPlugin.getInstance().msg(player, BreweryPlugin.getInstance().languageReader.get("Error_DataLoading"));
+				return;
+			}
 			if (Barrel.create(event.getBlock(), player)) {
 				BreweryPlugin.getInstance().msg(player, BreweryPlugin.getInstance().languageReader.get("Player_BarrelCreated"));
 			}
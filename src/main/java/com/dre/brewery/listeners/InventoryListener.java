@@ -19,7 +19,6 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.PotionMeta;
 
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.UUID;
 
 public class InventoryListener implements Listener {
@@ -182,16 +181,7 @@ public class InventoryListener implements Listener {
 		if (event.getInventory().getType() != InventoryType.BARREL) return;
 		if (!MCBarrel.enableAging) return;
 
-		Inventory inv = event.getInventory();
-		for (MCBarrel barrel : MCBarrel.openBarrels) {
-			if (barrel.getInventory().equals(inv)) {
-				barrel.clickInv(event);
-				return;
-			}
-		}
-		MCBarrel barrel = new MCBarrel(inv);
-		MCBarrel.openBarrels.add(barrel);
-		barrel.clickInv(event);
+		MCBarrel.getOpen(event.getInventory()).clickInv(event);
 	}
 
 	// Handle the Brew Sealer Inventory
@@ -235,16 +225,7 @@ public class InventoryListener implements Listener {
 
 		// Check for MC Barrel
 		if (event.getInventory().getType() == InventoryType.BARREL) {
-			Inventory inv = event.getInventory();
-			for (MCBarrel barrel : MCBarrel.openBarrels) {
-				if (barrel.getInventory().equals(inv)) {
-					barrel.open();
-					return;
-				}
-			}
-			MCBarrel barrel = new MCBarrel(inv);
-			MCBarrel.openBarrels.add(barrel);
-			barrel.open();
+			MCBarrel.getOpen(event.getInventory()).open();
 		}
 	}
 
@@ -291,6 +272,10 @@ public class InventoryListener implements Listener {
 
 	@EventHandler
 	public void onInventoryClose(InventoryCloseEvent event) {
+		if (event.getInventory().getHolder() instanceof Barrel barrel) {
+			// Contents may have changed while it was open
+			barrel.setNeedsSave(true);
+		}
 		if (VERSION.isOrEarlier(MinecraftVersion.V1_13)) return;
 		if (event.getInventory().getHolder() instanceof BSealer) {
 			((BSealer) event.getInventory().getHolder()).closeInv();
@@ -307,18 +292,11 @@ public class InventoryListener implements Listener {
 		// Check for MC Barrel
 		if (MCBarrel.enableAging && event.getInventory().getType() == InventoryType.BARREL) {
 			Inventory inv = event.getInventory();
-			for (Iterator<MCBarrel> iter = MCBarrel.openBarrels.iterator(); iter.hasNext(); ) {
-				MCBarrel barrel = iter.next();
-				if (barrel.getInventory().equals(inv)) {
-					barrel.close();
-					if (inv.getViewers().size() == 1) {
-						// Last viewer, remove Barrel from List of open Barrels
-						iter.remove();
-					}
-					return;
-				}
+			MCBarrel.getOpen(inv).close();
+			if (inv.getViewers().size() == 1) {
+				// Last viewer, stop keeping track of the open Barrel
+				MCBarrel.removeOpen(inv);
 			}
-			new MCBarrel(inv).close();
 		}
 	}
 }
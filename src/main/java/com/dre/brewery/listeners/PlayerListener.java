@@ -10,6 +10,7 @@ import com.dre.brewery.DistortChat;
 import com.dre.brewery.Wakeup;
 import com.dre.brewery.filedata.BConfig;
 import com.dre.brewery.filedata.UpdateChecker;
+import com.dre.brewery.storage.DataManager;
 import com.dre.brewery.utility.BUtil;
 import com.dre.brewery.utility.LegacyUtil;
 import com.dre.brewery.utility.MinecraftVersion;
@@ -88,6 +89,13 @@ public class PlayerListener implements Listener {
 
 		if (player.isSneaking()) return;
 
+		// -- Barrels and Cauldrons are not loaded yet --
+		if (DataManager.isLoading() && BUtil.isBarrelOrCauldronType(type)) {
+			event.setCancelled(true);
+			BreweryPlugin.getInstance().msg(player, BreweryPlugin.getInstance().languageReader.get("Error_DataLoading"));
+			return;
+		}
+
 		// -- Interacting with a Cauldron --
 		if (LegacyUtil.isWaterCauldron(type)) {
 			// Handle the Cauldron Interact
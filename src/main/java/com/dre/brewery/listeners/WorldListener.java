@@ -0,0 +1,24 @@
+package com.dre.brewery.listeners;
+
+import com.dre.brewery.Barrel;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+/**
+ * Loads and unloads the contents of Barrels with their chunk, only registered if BConfig.lazyBarrels is enabled
+ */
+public class WorldListener implements Listener {
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onChunkLoad(ChunkLoadEvent event) {
+		Barrel.onChunkLoad(event.getChunk());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onChunkUnload(ChunkUnloadEvent event) {
+		Barrel.onChunkUnload(event.getChunk());
+	}
+}
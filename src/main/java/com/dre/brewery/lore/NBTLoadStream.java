@@ -27,6 +27,13 @@ public class NBTLoadStream extends ByteArrayInputStream {
 		return bytes;
 	}
 
+	/**
+	 * The raw data of this stream. Must not be modified
+	 */
+	public byte[] getData() {
+		return buf;
+	}
+
 	public boolean hasData() {
 		return count > 0;
 	}
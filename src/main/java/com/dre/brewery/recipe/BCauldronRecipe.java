@@ -154,6 +154,7 @@ public class BCauldronRecipe {
 	 */
 	public void setIngredients(@NotNull List<RecipeItem> ingredients) {
 		this.ingredients = ingredients;
+		CauldronRecipeMatcher.invalidate();
 	}
 
 	public void setColor(@NotNull PotionColor color) {
@@ -225,7 +226,9 @@ public class BCauldronRecipe {
 			double mod = Math.pow(0.1, tooMuch);
 			match *= mod;
 		}
-		BreweryPlugin.getInstance().debugLog("Match for Cauldron Recipe " + name + ": " + match);
+		if (BreweryPlugin.debug) {
+			BreweryPlugin.getInstance().debugLog("Match for Cauldron Recipe " + name + ": " + match);
+		}
 		return match;
 	}
 
@@ -243,6 +246,7 @@ public class BCauldronRecipe {
 				}
 			}
 		}
+		RecipeItemIndex.invalidate();
 	}
 
 	@Override
@@ -33,6 +33,7 @@ public class BRecipe implements Cloneable {
 
 	private static final List<BRecipe> recipes = new ArrayList<>();
 	public static int numConfigRecipes; // The number of recipes in the list that are from config
+	private static volatile NameIndex nameIndex = null; // Lookup of recipes by their names, rebuilt when the recipes change
 
 	// info
 	private String[] name;
@@ -531,6 +532,7 @@ public class BRecipe implements Cloneable {
 				}
 			}
 		}
+		RecipeItemIndex.invalidate();
 	}
 
 
@@ -730,6 +732,7 @@ public class BRecipe implements Cloneable {
 
 	public void setName(String[] name) {
 		this.name = name;
+		invalidateIndex();
 	}
 
 	public void setCmData(int[] cmData) {
@@ -738,6 +741,7 @@ public class BRecipe implements Cloneable {
 
 	public void setId(String id) {
 		this.id = id;
+		invalidateIndex();
 	}
 
 	public void setDrinkTitle(String drinkTitle) {
@@ -766,6 +770,7 @@ public class BRecipe implements Cloneable {
 	 */
 	public void setIngredients(List<RecipeItem> ingredients) {
 		this.ingredients = ingredients;
+		RecipeMatcher.invalidate();
 	}
 
 	public void setCookingTime(int cookingTime) {
@@ -881,33 +886,22 @@ public class BRecipe implements Cloneable {
 	 */
 	@Nullable
 	public static BRecipe getMatching(String name) {
-		BRecipe mainNameRecipe = get(name);
-		if (mainNameRecipe != null) {
-			return mainNameRecipe;
-		}
-		for (BRecipe recipe : recipes) {
-			if (recipe.getName(1).equalsIgnoreCase(name)) {
-				return recipe;
-			} else if (recipe.getName(10).equalsIgnoreCase(name)) {
-				return recipe;
-			}
+		if (name == null) return null;
+		NameIndex index = getNameIndex();
+		String folded = BUtil.foldCase(name);
+		BRecipe recipe = index.byName.get(folded);
+		if (recipe == null) {
+			recipe = index.byQualityName.get(folded);
 		}
-		for (BRecipe recipe : recipes) {
-			if (name.equalsIgnoreCase(recipe.getId())) {
-				return recipe;
-			}
+		if (recipe == null) {
+			recipe = index.byFoldedId.get(folded);
 		}
-		return null;
+		return recipe;
 	}
 
 	@Nullable
 	public static BRecipe getById(String id) {
-		for (BRecipe recipe : recipes) {
-			if (id.equals(recipe.getId())) {
-				return recipe;
-			}
-		}
-		return null;
+		return getNameIndex().byId.get(id);
 	}
 
 
@@ -916,12 +910,59 @@ public class BRecipe implements Cloneable {
 	 */
 	@Nullable
 	public static BRecipe get(String name) {
-		for (BRecipe recipe : recipes) {
-			if (recipe.getRecipeName().equalsIgnoreCase(name)) {
-				return recipe;
+		if (name == null) return null;
+		return getNameIndex().byName.get(BUtil.foldCase(name));
+	}
+
+	/**
+	 * Mark the name lookup as outdated, so it is rebuilt on next use.
+	 * <p>Needs to be called after recipes are added, removed or renamed.
+	 * <p>Also recompiles the RecipeMatcher
+	 */
+	public static void invalidateIndex() {
+		nameIndex = null;
+		RecipeMatcher.invalidate();
+	}
+
+	private static NameIndex getNameIndex() {
+		NameIndex index = nameIndex;
+		// Also rebuild if the list was changed without invalidating
+		if (index == null || index.size != recipes.size()) {
+			index = new NameIndex(recipes);
+			nameIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Case insensitive lookup of recipes by name and id.
+	 * <p>If multiple recipes have the same name, the first one in the list of recipes is used
+	 */
+	private static final class NameIndex {
+		private final int size;
+		private final Map<String, BRecipe> byName = new HashMap<>(); // The name at quality 5
+		private final Map<String, BRecipe> byQualityName = new HashMap<>(); // The names at quality 1 and 10
+		private final Map<String, BRecipe> byFoldedId = new HashMap<>();
+		private final Map<String, BRecipe> byId = new HashMap<>();
+
+		private NameIndex(List<BRecipe> recipes) {
+			size = recipes.size();
+			for (BRecipe recipe : recipes) {
+				putFolded(byName, recipe.getRecipeName(), recipe);
+				putFolded(byQualityName, recipe.getName(1), recipe);
+				putFolded(byQualityName, recipe.getName(10), recipe);
+				putFolded(byFoldedId, recipe.getId(), recipe);
+				if (recipe.getId() != null) {
+					byId.putIfAbsent(recipe.getId(), recipe);
+				}
+			}
+		}
+
+		private static void putFolded(Map<String, BRecipe> map, String name, BRecipe recipe) {
+			if (name != null) {
+				map.putIfAbsent(BUtil.foldCase(name), recipe);
 			}
 		}
-		return null;
 	}
 
     @Override
@@ -0,0 +1,133 @@
+package com.dre.brewery.recipe;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the Cauldron Recipe that fits the ingredients of a Cauldron best.
+ * <p>Like the {@link RecipeMatcher}, the RecipeItems of all Cauldron Recipes are indexed by the Material
+ * (or plugin item) they can match. Only recipes that have all their RecipeItems among the ingredients are scored
+ * with {@link BCauldronRecipe#getIngredientMatch(List)}, all others would score 0 anyway.
+ */
+public class CauldronRecipeMatcher {
+
+	private static volatile CauldronRecipeMatcher instance;
+
+	private final int size; // Size of the recipe list when compiled
+	private final BCauldronRecipe[] recipes;
+	private final long[] fullMasks; // Bit for each RecipeItem of a recipe
+	private final boolean[] uncompiled; // Recipes with too many items for the mask, always scored
+	private final Map<Object, ItemRef[]> byKey = new HashMap<>();
+	private final ItemRef[] wildcards;
+
+	private CauldronRecipeMatcher(List<BCauldronRecipe> recipeList) {
+		size = recipeList.size();
+		recipes = recipeList.toArray(new BCauldronRecipe[0]);
+		fullMasks = new long[recipes.length];
+		uncompiled = new boolean[recipes.length];
+
+		Map<Object, List<ItemRef>> keyed = new HashMap<>();
+		List<ItemRef> wildcardList = new ArrayList<>();
+		for (int r = 0; r < recipes.length; r++) {
+			List<RecipeItem> recipeItems = recipes[r].getIngredients();
+			if (recipeItems.size() > 64) {
+				uncompiled[r] = true;
+				continue;
+			}
+			fullMasks[r] = recipeItems.size() == 64 ? -1L : (1L << recipeItems.size()) - 1;
+			for (int i = 0; i < recipeItems.size(); i++) {
+				RecipeItem rItem = recipeItems.get(i);
+				ItemRef ref = new ItemRef(r, 1L << i, rItem);
+				Set<Object> keys = RecipeMatcher.keysOf(rItem);
+				if (keys == null) {
+					wildcardList.add(ref);
+				} else {
+					for (Object key : keys) {
+						keyed.computeIfAbsent(key, k -> new ArrayList<>()).add(ref);
+					}
+				}
+			}
+		}
+		for (Map.Entry<Object, List<ItemRef>> entry : keyed.entrySet()) {
+			byKey.put(entry.getKey(), entry.getValue().toArray(new ItemRef[0]));
+		}
+		wildcards = wildcardList.toArray(new ItemRef[0]);
+	}
+
+	public static CauldronRecipeMatcher getInstance() {
+		CauldronRecipeMatcher matcher = instance;
+		List<BCauldronRecipe> all = BCauldronRecipe.getAllRecipes();
+		// Also recompile if the list was changed without invalidating
+		if (matcher == null || matcher.size != all.size()) {
+			matcher = new CauldronRecipeMatcher(all);
+			instance = matcher;
+		}
+		return matcher;
+	}
+
+	/**
+	 * Recompile on next use, after Cauldron Recipes were added, removed or changed
+	 */
+	public static void invalidate() {
+		instance = null;
+	}
+
+	/**
+	 * Get the Cauldron Recipe that matches these ingredients best.
+	 * <p>The same as scoring every Cauldron Recipe: the first one with a perfect match, otherwise the one with the best match
+	 *
+	 * @return The best Cauldron Recipe, or null if none matches at all
+	 */
+	@Nullable
+	public BCauldronRecipe findBest(List<Ingredient> ingredients) {
+		long[] masks = new long[recipes.length];
+		for (Ingredient ingredient : ingredients) {
+			Object key = RecipeMatcher.keyOf(ingredient);
+			if (key != null) {
+				ItemRef[] refs = byKey.get(key);
+				if (refs != null) {
+					matchRefs(refs, ingredient, masks);
+				}
+			}
+			matchRefs(wildcards, ingredient, masks);
+		}
+
+		BCauldronRecipe best = null;
+		float bestMatch = 0;
+		for (int r = 0; r < recipes.length; r++) {
+			if (!uncompiled[r] && masks[r] != fullMasks[r]) {
+				// Missing a RecipeItem
+				continue;
+			}
+			float match = recipes[r].getIngredientMatch(ingredients);
+			if (match >= 10) {
+				return recipes[r];
+			}
+			if (match > bestMatch) {
+				best = recipes[r];
+				bestMatch = match;
+			}
+		}
+		return best;
+	}
+
+	public String getStats() {
+		return "Cauldron Recipe Matcher: " + recipes.length + " recipes, " + byKey.size() + " item keys, " + wildcards.length + " wildcard items";
+	}
+
+	private static void matchRefs(ItemRef[] refs, Ingredient ingredient, long[] masks) {
+		for (ItemRef ref : refs) {
+			if ((masks[ref.recipe] & ref.bit) == 0 && ref.rItem.matches(ingredient)) {
+				masks[ref.recipe] |= ref.bit;
+			}
+		}
+	}
+
+	private record ItemRef(int recipe, long bit, RecipeItem rItem) {
+	}
+}
@@ -173,6 +173,23 @@ public class CustomItem extends RecipeItem implements Ingredient {
 		}
 		ItemMeta meta = item.getItemMeta();
 		assert meta != null;
+		return matchesMeta(meta);
+	}
+
+	@Override
+	public boolean matches(ItemStack item, @Nullable ItemMeta meta) {
+		if (mat != null) {
+			if (item.getType() != mat) {
+				return false;
+			}
+		}
+		if (name == null && !hasLore()) {
+			return true;
+		}
+		return meta != null && matchesMeta(meta);
+	}
+
+	private boolean matchesMeta(ItemMeta meta) {
 		if (name != null) {
 			if (!meta.hasDisplayName() || !name.equalsIgnoreCase(meta.getDisplayName())) {
 				return false;
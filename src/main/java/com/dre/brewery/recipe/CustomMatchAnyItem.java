@@ -215,13 +215,28 @@ public class CustomMatchAnyItem extends RecipeItem {
 		if (getMaterialMatch(item) != null) {
 			return true;
 		}
-		if (getNameMatch(item) != null) {
+		if (!item.hasItemMeta() || (!hasNames() && !hasLore() && !hasCustomModelDatas())) {
+			return false;
+		}
+		return matchesMeta(item.getItemMeta());
+	}
+
+	@Override
+	public boolean matches(ItemStack item, @Nullable ItemMeta meta) {
+		if (getMaterialMatch(item) != null) {
+			return true;
+		}
+		return meta != null && matchesMeta(meta);
+	}
+
+	private boolean matchesMeta(ItemMeta meta) {
+		if (hasNames() && meta.hasDisplayName() && getNameMatch(meta.getDisplayName()) != null) {
 			return true;
 		}
-		if (getLoreMatch(item) != null) {
+		if (hasLore() && meta.hasLore() && getLoreMatch(meta.getLore()) != null) {
 			return true;
 		}
-		return getCustomModelDataMatch(item) != null;
+		return hasCustomModelDatas() && meta.hasCustomModelData() && getCustomModelDataMatch(meta.getCustomModelData()) != null;
 	}
 
 	@Override
@@ -7,6 +7,7 @@ import com.dre.brewery.utility.MinecraftVersion;
 import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -41,6 +42,18 @@ public abstract class RecipeItem implements Cloneable {
 	 */
 	public abstract boolean matches(ItemStack item);
 
+	/**
+	 * Does this RecipeItem match the given ItemStack, with its ItemMeta already taken from it?
+	 * <p>Getting the ItemMeta of an item copies it, this lets many RecipeItems share one copy
+	 *
+	 * @param item The ItemStack for comparison
+	 * @param meta The ItemMeta of the item, null if it has none
+	 * @return True if the given item matches this recipeItem
+	 */
+	public boolean matches(ItemStack item, @Nullable ItemMeta meta) {
+		return matches(item);
+	}
+
 	/**
 	 * Does this Item match the given Ingredient?
 	 * <p>A RecipeItem matches an Ingredient if all required info of the RecipeItem are fulfilled on the Ingredient
@@ -142,28 +155,7 @@ public abstract class RecipeItem implements Cloneable {
 	@Nullable
 	@Contract("_, true -> !null")
 	public static RecipeItem getMatchingRecipeItem(ItemStack item, boolean acceptAll) {
-		RecipeItem rItem = null;
-		boolean multiMatch = false;
-		for (RecipeItem ri : BCauldronRecipe.acceptedCustom) {
-			// If we already have a multi match, only check if there is a PluginItem that matches more strictly
-			if (!multiMatch || (ri instanceof PluginItem)) {
-				if (ri.matches(item)) {
-					// If we match a plugin item, that's a very strict match, so immediately return it
-					if (ri instanceof PluginItem) {
-						return ri;
-					}
-					if (rItem == null) {
-						rItem = ri;
-					} else {
-						multiMatch = true;
-					}
-				}
-			}
-		}
-		if (multiMatch) {
-			// We have multiple Custom Items matching, so just store all item info
-			return new CustomItem(item);
-		}
+		RecipeItem rItem = RecipeItemIndex.getInstance().match(item);
 		if (rItem == null && (acceptAll || BCauldronRecipe.acceptedSimple.contains(item.getType()))) {
 			// No Custom item found
 			if (VERSION.isOrLater(MinecraftVersion.V1_13)) {
@@ -0,0 +1,161 @@
+package com.dre.brewery.recipe;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the accepted custom items of all Cauldron Recipes ({@link BCauldronRecipe#acceptedCustom}) by Material.
+ * <p>An item put into a Cauldron is only compared with the RecipeItems that can match its Material,
+ * and with the ones that can match any Material, like CustomItems without Material, CustomMatchAnyItems with names
+ * or lore, or items of unknown classes.
+ * <p>PluginItems can't be indexed, as only the plugin can tell their id from an item. The ones of the supported plugins
+ * are skipped for items without ItemMeta though, as those plugins keep their ids in the ItemMeta.
+ */
+public class RecipeItemIndex {
+
+	private static final String OWN_PLUGIN_ITEMS = "com.dre.brewery.integration.item.";
+
+	private static volatile RecipeItemIndex instance;
+
+	private final int size; // Size of the accepted list when built
+	private final PluginItem[] pluginItems;
+	private final boolean pluginItemsNeedMeta;
+	private final Map<Material, RecipeItem[]> byMaterial = new EnumMap<>(Material.class); // Includes the wildcards
+	private final RecipeItem[] wildcards;
+
+	private RecipeItemIndex(List<RecipeItem> accepted) {
+		size = accepted.size();
+		List<PluginItem> plugins = new ArrayList<>();
+		boolean needMeta = true;
+		Set<Material> materials = new LinkedHashSet<>();
+		List<RecipeItem> wildcardList = new ArrayList<>();
+		for (RecipeItem rItem : accepted) {
+			if (rItem instanceof PluginItem plugin) {
+				plugins.add(plugin);
+				needMeta &= plugin.getClass().getName().startsWith(OWN_PLUGIN_ITEMS);
+				continue;
+			}
+			List<Material> keys = materialsOf(rItem);
+			if (keys == null) {
+				wildcardList.add(rItem);
+			} else {
+				materials.addAll(keys);
+			}
+		}
+		pluginItems = plugins.toArray(new PluginItem[0]);
+		pluginItemsNeedMeta = needMeta;
+		wildcards = wildcardList.toArray(new RecipeItem[0]);
+
+		// Keep the order of the accepted list for each Material
+		for (Material material : materials) {
+			List<RecipeItem> candidates = new ArrayList<>();
+			for (RecipeItem rItem : accepted) {
+				if (rItem instanceof PluginItem) {
+					continue;
+				}
+				List<Material> keys = materialsOf(rItem);
+				if (keys == null || keys.contains(material)) {
+					candidates.add(rItem);
+				}
+			}
+			byMaterial.put(material, candidates.toArray(new RecipeItem[0]));
+		}
+	}
+
+	public static RecipeItemIndex getInstance() {
+		RecipeItemIndex index = instance;
+		// Also rebuild if the list was changed without invalidating
+		if (index == null || index.size != BCauldronRecipe.acceptedCustom.size()) {
+			index = new RecipeItemIndex(BCauldronRecipe.acceptedCustom);
+			instance = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Rebuild on next use, after the accepted items were changed
+	 */
+	public static void invalidate() {
+		instance = null;
+	}
+
+	/**
+	 * Find the accepted custom item that matches this item.
+	 * <p>A matching PluginItem is always used. Otherwise, if more than one item matches, a CustomItem of the item is returned
+	 *
+	 * @return The matching RecipeItem, or null if none matches
+	 */
+	@Nullable
+	public RecipeItem match(@NotNull ItemStack item) {
+		boolean checkPlugins = pluginItems.length > 0 && (!pluginItemsNeedMeta || item.hasItemMeta());
+		RecipeItem[] candidates = getCandidates(item.getType());
+		if (!checkPlugins && candidates.length == 0) {
+			return null;
+		}
+		// Getting the ItemMeta copies it, so it is only done once for all candidates
+		ItemMeta meta = item.hasItemMeta() ? item.getItemMeta() : null;
+
+		if (checkPlugins) {
+			for (PluginItem plugin : pluginItems) {
+				// If we match a plugin item, that's a very strict match, so immediately return it
+				if (plugin.matches(item, meta)) {
+					return plugin;
+				}
+			}
+		}
+		RecipeItem rItem = null;
+		for (RecipeItem candidate : candidates) {
+			if (candidate.matches(item, meta)) {
+				if (rItem != null) {
+					// We have multiple Custom Items matching, so just store all item info
+					return new CustomItem(item);
+				}
+				rItem = candidate;
+			}
+		}
+		return rItem;
+	}
+
+	@NotNull
+	private RecipeItem[] getCandidates(Material material) {
+		RecipeItem[] candidates = byMaterial.get(material);
+		return candidates != null ? candidates : wildcards;
+	}
+
+	public String getStats() {
+		return "Cauldron Item Index: " + size + " accepted custom items, " + byMaterial.size() + " Materials, "
+			+ wildcards.length + " wildcard items, " + pluginItems.length + " plugin items";
+	}
+
+	/**
+	 * The Materials this RecipeItem can match, or null if it can match items of any Material
+	 */
+	@Nullable
+	private static List<Material> materialsOf(RecipeItem rItem) {
+		// Subclasses from addons may match differently, we can't index those
+		if (rItem.getClass() == SimpleItem.class) {
+			return List.of(((SimpleItem) rItem).getMaterial());
+		} else if (rItem.getClass() == CustomItem.class) {
+			CustomItem custom = (CustomItem) rItem;
+			return custom.hasMaterials() ? List.of(custom.getMaterial()) : null;
+		} else if (rItem.getClass() == CustomMatchAnyItem.class) {
+			CustomMatchAnyItem any = (CustomMatchAnyItem) rItem;
+			// Names, lore and model data can match any Material
+			if (any.hasNames() || any.hasLore() || any.hasCustomModelDatas() || !any.hasMaterials()) {
+				return null;
+			}
+			return any.getMaterials();
+		}
+		return null;
+	}
+}
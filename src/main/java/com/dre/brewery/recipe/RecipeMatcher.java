@@ -0,0 +1,354 @@
+package com.dre.brewery.recipe;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Precompiled matching of Ingredients against all BRecipes.
+ * <p>Instead of asking every recipe if it is missing ingredients and how many of each ingredient it needs,
+ * the RecipeItems of all recipes are indexed by the Material (or plugin item) they can match.
+ * Each Ingredient is then only compared with the RecipeItems that could possibly match it,
+ * and only recipes that have all their RecipeItems matched are returned as candidates.
+ * <p>RecipeItems that can match without a specific Material, like CustomItems without Material,
+ * CustomMatchAnyItems with names or lore, or items of unknown classes, are compared with every Ingredient.
+ * <p>The results are the same as with isMissingIngredients() and amountOf() of each BRecipe.
+ * <p>Also remembers the best recipe for recently searched ingredients, as all Brews of a Barrel
+ * often have the same ingredients, age and wood. Recompiling after recipe changes also forgets those.
+ */
+public class RecipeMatcher {
+
+	private static final int MAX_BEST_RECIPES = 1024;
+
+	private static volatile RecipeMatcher instance;
+
+	private final int size; // Size of the recipe list when compiled
+	private final BRecipe[] recipes;
+	private final int[] itemCounts;
+	private final RecipeItem[][] items;
+	private final long[] fullMasks; // Bit for each RecipeItem of a recipe
+	private final boolean[] uncompiled; // Recipes with too many items for the mask, checked the old way
+	private final Map<Object, ItemRef[]> byKey = new HashMap<>();
+	private final ItemRef[] wildcards;
+	private final int[] alwaysCandidates; // Recipes without any RecipeItems
+
+	private final Map<BestRecipeKey, Optional<BRecipe>> bestRecipes = new LinkedHashMap<>(64, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<BestRecipeKey, Optional<BRecipe>> eldest) {
+			return size() > MAX_BEST_RECIPES;
+		}
+	};
+	private long bestHits;
+	private long bestMisses;
+
+	private RecipeMatcher(List<BRecipe> recipeList) {
+		size = recipeList.size();
+		recipes = recipeList.toArray(new BRecipe[0]);
+		itemCounts = new int[recipes.length];
+		items = new RecipeItem[recipes.length][];
+		fullMasks = new long[recipes.length];
+		uncompiled = new boolean[recipes.length];
+
+		Map<Object, List<ItemRef>> keyed = new HashMap<>();
+		List<ItemRef> wildcardList = new ArrayList<>();
+		List<Integer> always = new ArrayList<>();
+		for (int r = 0; r < recipes.length; r++) {
+			List<RecipeItem> recipeItems = recipes[r].getIngredients();
+			itemCounts[r] = recipeItems.size();
+			if (recipeItems.isEmpty()) {
+				always.add(r);
+				continue;
+			}
+			if (recipeItems.size() > 64) {
+				uncompiled[r] = true;
+				continue;
+			}
+			items[r] = recipeItems.toArray(new RecipeItem[0]);
+			fullMasks[r] = items[r].length == 64 ? -1L : (1L << items[r].length) - 1;
+			for (int i = 0; i < items[r].length; i++) {
+				RecipeItem rItem = items[r][i];
+				ItemRef ref = new ItemRef(r, i, rItem);
+				Set<Object> keys = keysOf(rItem);
+				if (keys == null) {
+					wildcardList.add(ref);
+				} else {
+					for (Object key : keys) {
+						keyed.computeIfAbsent(key, k -> new ArrayList<>()).add(ref);
+					}
+				}
+			}
+		}
+		for (Map.Entry<Object, List<ItemRef>> entry : keyed.entrySet()) {
+			byKey.put(entry.getKey(), entry.getValue().toArray(new ItemRef[0]));
+		}
+		wildcards = wildcardList.toArray(new ItemRef[0]);
+		alwaysCandidates = always.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	public static RecipeMatcher getInstance() {
+		RecipeMatcher matcher = instance;
+		List<BRecipe> all = BRecipe.getAllRecipes();
+		// Also recompile if the list was changed without invalidating
+		if (matcher == null || matcher.size != all.size()) {
+			matcher = new RecipeMatcher(all);
+			instance = matcher;
+		}
+		return matcher;
+	}
+
+	/**
+	 * Recompile on next use, after recipes were added, removed or changed
+	 */
+	public static void invalidate() {
+		instance = null;
+	}
+
+	/**
+	 * Find all recipes that are not missing any of their ingredients in the given list.
+	 *
+	 * @param ingredients The Ingredients, i.e. of a Brew
+	 * @return The candidate recipes, in the order of all recipes, with the amount each recipe wants of every ingredient
+	 */
+	public Candidates match(List<Ingredient> ingredients) {
+		int n = ingredients.size();
+		long[] masks = new long[recipes.length];
+		int[] firstItem = new int[recipes.length * n];
+		Arrays.fill(firstItem, -1);
+
+		for (int i = 0; i < n; i++) {
+			Ingredient ingredient = ingredients.get(i);
+			Object key = keyOf(ingredient);
+			if (key != null) {
+				ItemRef[] refs = byKey.get(key);
+				if (refs != null) {
+					matchRefs(refs, ingredient, i, n, masks, firstItem);
+				}
+			}
+			matchRefs(wildcards, ingredient, i, n, masks, firstItem);
+		}
+
+		Candidates candidates = new Candidates(n);
+		int alwaysIndex = 0;
+		for (int r = 0; r < recipes.length; r++) {
+			BRecipe recipe = recipes[r];
+			if (alwaysIndex < alwaysCandidates.length && alwaysCandidates[alwaysIndex] == r) {
+				// No RecipeItems, so it can't miss any and wants none of the ingredients
+				alwaysIndex++;
+				candidates.add(recipe, new int[n]);
+			} else if (uncompiled[r]) {
+				if (!recipe.isMissingIngredients(ingredients)) {
+					int[] amounts = new int[n];
+					for (int i = 0; i < n; i++) {
+						amounts[i] = recipe.amountOf(ingredients.get(i));
+					}
+					candidates.add(recipe, amounts);
+				}
+			} else if (n >= itemCounts[r] && masks[r] == fullMasks[r]) {
+				int[] amounts = new int[n];
+				int offset = r * n;
+				for (int i = 0; i < n; i++) {
+					int item = firstItem[offset + i];
+					amounts[i] = item < 0 ? 0 : items[r][item].getAmount();
+				}
+				candidates.add(recipe, amounts);
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Get the remembered best recipe for these ingredients, or search and remember it.
+	 *
+	 * @param fingerprint The ingredients and cooked time in a canonical form, i.e. as saved to the brew data
+	 * @param wood The wood type the brew was aged in
+	 * @param time The age time of the brew
+	 * @param distilled If the brew was distilled
+	 * @param search Finds the best recipe if not remembered, may return null
+	 * @return The best recipe, or null if none fits
+	 */
+	@Nullable
+	public BRecipe getBestRecipe(byte[] fingerprint, float wood, float time, boolean distilled, Supplier<BRecipe> search) {
+		BestRecipeKey key = new BestRecipeKey(fingerprint, wood, time, distilled);
+		Optional<BRecipe> best;
+		synchronized (bestRecipes) {
+			best = bestRecipes.get(key);
+			if (best != null) {
+				bestHits++;
+				return best.orElse(null);
+			}
+			bestMisses++;
+		}
+		// Search outside the lock, another thread may search the same at worst
+		BRecipe recipe = search.get();
+		synchronized (bestRecipes) {
+			bestRecipes.put(key, Optional.ofNullable(recipe));
+		}
+		return recipe;
+	}
+
+	public String getStats() {
+		synchronized (bestRecipes) {
+			return "Recipe Matcher: " + recipes.length + " recipes, " + byKey.size() + " item keys, " + wildcards.length + " wildcard items, "
+				+ bestRecipes.size() + " remembered best recipes, hits: " + bestHits + ", misses: " + bestMisses;
+		}
+	}
+
+	private static void matchRefs(ItemRef[] refs, Ingredient ingredient, int i, int n, long[] masks, int[] firstItem) {
+		for (ItemRef ref : refs) {
+			if (ref.rItem.matches(ingredient)) {
+				masks[ref.recipe] |= 1L << ref.item;
+				int slot = ref.recipe * n + i;
+				// amountOf() uses the first RecipeItem of the recipe that matches
+				if (firstItem[slot] < 0 || ref.item < firstItem[slot]) {
+					firstItem[slot] = ref.item;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The keys of all Ingredients this RecipeItem could match, or null if it can match Ingredients without a key
+	 */
+	@Nullable
+	static Set<Object> keysOf(RecipeItem rItem) {
+		if (!hasKnownMatching(rItem)) {
+			return null;
+		}
+		Set<Object> keys = new LinkedHashSet<>();
+		if (rItem instanceof SimpleItem simple) {
+			keys.add(simple.getMaterial());
+		} else if (rItem instanceof CustomMatchAnyItem any) {
+			// Names, lore and model data can match any Material
+			if (any.hasNames() || any.hasLore() || any.hasCustomModelDatas()) {
+				return null;
+			}
+			if (any.hasMaterials()) {
+				keys.addAll(any.getMaterials());
+			}
+		} else if (rItem instanceof CustomItem custom) {
+			// Without Material it matches CustomItems of any Material
+			if (!custom.hasMaterials()) {
+				return null;
+			}
+			keys.add(custom.getMaterial());
+		} else if (rItem instanceof PluginItem plugin) {
+			keys.add(new PluginKey(plugin.getPlugin(), plugin.getItemId()));
+		} else {
+			return null;
+		}
+		return keys;
+	}
+
+	/**
+	 * The key of the RecipeItems that could match this Ingredient, or null if only wildcards can
+	 */
+	@Nullable
+	static Object keyOf(Ingredient ingredient) {
+		if (ingredient instanceof SimpleItem simple) {
+			return simple.getMaterial();
+		} else if (ingredient instanceof CustomItem custom) {
+			// Null if it has no Material
+			return custom.getMaterial();
+		} else if (ingredient instanceof PluginItem plugin) {
+			return new PluginKey(plugin.getPlugin(), plugin.getItemId());
+		}
+		return null;
+	}
+
+	// Subclasses from addons may match Ingredients differently, we can't index those
+	private static boolean hasKnownMatching(RecipeItem rItem) {
+		try {
+			Class<?> matches = rItem.getClass().getMethod("matches", Ingredient.class).getDeclaringClass();
+			Class<?> similar = rItem instanceof Ingredient ? rItem.getClass().getMethod("isSimilar", Ingredient.class).getDeclaringClass() : null;
+			return isKnownClass(matches) && (similar == null || isKnownClass(similar));
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	private static boolean isKnownClass(Class<?> clazz) {
+		return clazz == SimpleItem.class || clazz == CustomItem.class || clazz == CustomMatchAnyItem.class || clazz == PluginItem.class;
+	}
+
+	private record ItemRef(int recipe, int item, RecipeItem rItem) {
+	}
+
+	private record PluginKey(String plugin, String itemId) {
+	}
+
+	// Wood and time are compared exactly, so a remembered recipe is always the one the search would find
+	private static final class BestRecipeKey {
+		private final byte[] fingerprint;
+		private final int wood;
+		private final int time;
+		private final boolean distilled;
+		private final int hash;
+
+		private BestRecipeKey(byte[] fingerprint, float wood, float time, boolean distilled) {
+			this.fingerprint = fingerprint;
+			this.wood = Float.floatToIntBits(wood);
+			this.time = Float.floatToIntBits(time);
+			this.distilled = distilled;
+			this.hash = ((Arrays.hashCode(fingerprint) * 31 + this.wood) * 31 + this.time) * 2 + (distilled ? 1 : 0);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof BestRecipeKey other)) return false;
+			return hash == other.hash && wood == other.wood && time == other.time && distilled == other.distilled
+				&& Arrays.equals(fingerprint, other.fingerprint);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	/**
+	 * Recipes that have all their ingredients, with the amount of each ingredient the recipe wants
+	 */
+	public static class Candidates {
+		private final int numIngredients;
+		private final List<BRecipe> recipes = new ArrayList<>();
+		private final List<int[]> amounts = new ArrayList<>();
+
+		private Candidates(int numIngredients) {
+			this.numIngredients = numIngredients;
+		}
+
+		private void add(BRecipe recipe, int[] amountsInRecipe) {
+			recipes.add(recipe);
+			amounts.add(amountsInRecipe);
+		}
+
+		public int size() {
+			return recipes.size();
+		}
+
+		public BRecipe getRecipe(int index) {
+			return recipes.get(index);
+		}
+
+		/**
+		 * For each ingredient, the same as getRecipe(index).amountOf(ingredient)
+		 */
+		public int[] getAmounts(int index) {
+			return amounts.get(index);
+		}
+
+		public int getNumIngredients() {
+			return numIngredients;
+		}
+	}
+}
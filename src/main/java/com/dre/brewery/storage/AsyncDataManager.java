@@ -0,0 +1,334 @@
+package com.dre.brewery.storage;
+
+import com.dre.brewery.BCauldron;
+import com.dre.brewery.BPlayer;
+import com.dre.brewery.Barrel;
+import com.dre.brewery.BreweryPlugin;
+import com.dre.brewery.Wakeup;
+import com.dre.brewery.storage.records.BarrelSnapshot;
+import com.dre.brewery.storage.records.BreweryMiscData;
+import com.dre.brewery.storage.records.SerializableBPlayer;
+import com.dre.brewery.storage.records.SerializableCauldron;
+import com.dre.brewery.storage.records.SerializableWakeup;
+import com.dre.brewery.utility.BUtil;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the operations of a {@link DataManager} on its own I/O threads, instead of the thread that calls them.
+ * <p>Writes of the same thing run in the order they were made. A write that has not started yet is replaced by a newer
+ * write of the same thing, so only its latest state is written. Reads of a thing wait for its queued writes.
+ * <p>Things are copied when their write is queued, so it has to be called where they may be accessed.
+ */
+public final class AsyncDataManager {
+
+    private static final int MAX_PLATFORM_THREADS = 4;
+    private static final UUID MISC_ID = new UUID(0, 0);
+
+    private final BreweryPlugin plugin = BreweryPlugin.getInstance();
+    private final DataManager dataManager;
+    private final ExecutorService executor = createExecutor();
+    private final Map<UUID, Queued> queued = new HashMap<>(); // Guarded by itself
+    private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger coalesced = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * The writes of one thing: the one that is running, and the one that runs after it
+     */
+    private static final class Queued {
+        private CompletableFuture<Void> running;
+        private Runnable next;
+        private CompletableFuture<Void> nextFuture;
+    }
+
+    AsyncDataManager(DataManager dataManager) {
+        this.dataManager = dataManager;
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            // Java 21+, virtual threads don't hold on to a platform thread while waiting for the database
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadId = new AtomicInteger();
+            return Executors.newFixedThreadPool(Math.min(MAX_PLATFORM_THREADS, Runtime.getRuntime().availableProcessors()), runnable -> {
+                Thread thread = new Thread(runnable, "Brewery Storage I/O #" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+
+    // Barrels
+
+    /**
+     * Only the data, create the Barrels from it on the main thread with {@link BarrelSnapshot#toBarrel()}
+     */
+    public CompletableFuture<Collection<BarrelSnapshot>> getAllBarrelSnapshots(boolean withContents) {
+        return call(() -> dataManager.getAllBarrelSnapshots(withContents));
+    }
+
+    public CompletableFuture<ItemStack[]> getBarrelContents(UUID id) {
+        return read(id, () -> dataManager.getBarrelContents(id));
+    }
+
+    public CompletableFuture<Void> saveBarrel(Barrel barrel) {
+        return saveBarrel(BarrelSnapshot.of(barrel));
+    }
+
+    public CompletableFuture<Void> saveBarrel(BarrelSnapshot barrel) {
+        return write(barrel.id(), () -> dataManager.saveAllBarrels(List.of(barrel), false));
+    }
+
+    public CompletableFuture<Void> deleteBarrel(UUID id) {
+        return write(id, () -> dataManager.deleteBarrel(id));
+    }
+
+
+    // Cauldrons
+
+    public CompletableFuture<BCauldron> getCauldron(UUID id) {
+        return read(id, () -> dataManager.getCauldron(id));
+    }
+
+    public CompletableFuture<Collection<BCauldron>> getAllCauldrons() {
+        return call(dataManager::getAllCauldrons);
+    }
+
+    public CompletableFuture<Void> saveCauldron(BCauldron cauldron) {
+        SerializableCauldron serializable = new SerializableCauldron(cauldron);
+        return write(cauldron.getId(), () -> dataManager.saveAllCauldrons(List.of(serializable), false));
+    }
+
+    public CompletableFuture<Void> deleteCauldron(UUID id) {
+        return write(id, () -> dataManager.deleteCauldron(id));
+    }
+
+
+    // Players
+
+    public CompletableFuture<BPlayer> getPlayer(UUID playerUUID) {
+        return read(playerUUID, () -> dataManager.getPlayer(playerUUID));
+    }
+
+    public CompletableFuture<Collection<BPlayer>> getAllPlayers() {
+        return call(dataManager::getAllPlayers);
+    }
+
+    public CompletableFuture<Void> savePlayer(BPlayer player) {
+        UUID id = BUtil.uuidFromString(player.getUuid());
+        if (id == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        SerializableBPlayer serializable = new SerializableBPlayer(player);
+        return write(id, () -> dataManager.saveAllPlayers(List.of(serializable), false));
+    }
+
+    public CompletableFuture<Void> deletePlayer(UUID playerUUID) {
+        return write(playerUUID, () -> dataManager.deletePlayer(playerUUID));
+    }
+
+
+    // Wakeups
+
+    public CompletableFuture<Wakeup> getWakeup(UUID id) {
+        return read(id, () -> dataManager.getWakeup(id));
+    }
+
+    public CompletableFuture<Collection<Wakeup>> getAllWakeups() {
+        return call(dataManager::getAllWakeups);
+    }
+
+    public CompletableFuture<Void> saveWakeup(Wakeup wakeup) {
+        SerializableWakeup serializable = new SerializableWakeup(wakeup);
+        return write(wakeup.getId(), () -> dataManager.saveAllWakeups(List.of(serializable), false));
+    }
+
+    public CompletableFuture<Void> deleteWakeup(UUID id) {
+        return write(id, () -> dataManager.deleteWakeup(id));
+    }
+
+
+    // Misc
+
+    public CompletableFuture<BreweryMiscData> getBreweryMiscData() {
+        return read(MISC_ID, dataManager::getBreweryMiscData);
+    }
+
+    public CompletableFuture<Void> saveBreweryMiscData(BreweryMiscData data) {
+        return write(MISC_ID, () -> dataManager.saveBreweryMiscData(data));
+    }
+
+    /**
+     * @see DataManager#migrateRecordFormat()
+     */
+    public CompletableFuture<Integer> migrateRecordFormat() {
+        return call(dataManager::migrateRecordFormat);
+    }
+
+
+    // Queue
+
+    private CompletableFuture<Void> write(UUID id, Runnable write) {
+        synchronized (queued) {
+            if (closed) {
+                // Shutting down, the I/O threads may be gone already
+                return CompletableFuture.runAsync(write, Runnable::run);
+            }
+            Queued writes = queued.get(id);
+            if (writes == null) {
+                writes = new Queued();
+                writes.running = track(new CompletableFuture<>());
+                queued.put(id, writes);
+                start(id, write, writes.running);
+                return writes.running;
+            }
+            if (writes.next != null) {
+                // Not started yet, write the newer state instead
+                coalesced.incrementAndGet();
+            } else {
+                writes.nextFuture = track(new CompletableFuture<>());
+            }
+            writes.next = write;
+            return writes.nextFuture;
+        }
+    }
+
+    private void start(UUID id, Runnable write, CompletableFuture<Void> future) {
+        Runnable task = () -> {
+            try {
+                write.run();
+                future.complete(null);
+            } catch (RuntimeException e) {
+                plugin.errorLog("Failed to write to storage!", e);
+                future.completeExceptionally(e);
+            } finally {
+                startNext(id);
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // The I/O threads were stopped while this was queued, its future still has to complete
+            task.run();
+        }
+    }
+
+    private void startNext(UUID id) {
+        Runnable write;
+        CompletableFuture<Void> future;
+        synchronized (queued) {
+            Queued writes = queued.get(id);
+            if (writes.next == null) {
+                queued.remove(id);
+                return;
+            }
+            write = writes.next;
+            future = writes.nextFuture;
+            writes.running = future;
+            writes.next = null;
+            writes.nextFuture = null;
+        }
+        start(id, write, future);
+    }
+
+    private <T> CompletableFuture<T> read(UUID id, Supplier<T> read) {
+        CompletableFuture<Void> last;
+        synchronized (queued) {
+            Queued writes = queued.get(id);
+            last = writes == null ? null : writes.nextFuture != null ? writes.nextFuture : writes.running;
+        }
+        if (last == null) {
+            return call(read);
+        }
+        // Whether the write failed or not, read what is stored after it
+        return track(last.handle((ignored, e) -> null).thenApplyAsync(ignored -> read.get(), executor()));
+    }
+
+    /**
+     * Run something that is not ordered with the writes of single things
+     */
+    private <T> CompletableFuture<T> call(Supplier<T> call) {
+        return track(CompletableFuture.supplyAsync(call, executor()));
+    }
+
+    private Executor executor() {
+        if (closed) {
+            return Runnable::run;
+        }
+        return task -> {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // Stopped after the check above, run it here so its future still completes
+                task.run();
+            }
+        };
+    }
+
+    private <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        inFlight.add(future);
+        future.whenComplete((result, e) -> inFlight.remove(future));
+        return future;
+    }
+
+    /**
+     * @return Completes when everything that is queued now is done, failed or not
+     */
+    CompletableFuture<Void> queued() {
+        return CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0])).handle((ignored, e) -> null);
+    }
+
+    /**
+     * Wait for queued operations, but not longer than the timeout
+     *
+     * @return true if they are done
+     */
+    boolean await(CompletableFuture<Void> queued, long timeoutMillis) {
+        try {
+            queued.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return true; // Failures are logged where they happen
+        }
+    }
+
+    /**
+     * Wait for everything queued to be done and stop the I/O threads, before the storage is closed.
+     * <p>Operations after this run on the thread that calls them
+     */
+    void drain(long timeoutMillis) {
+        synchronized (queued) {
+            closed = true;
+        }
+        if (!await(queued(), timeoutMillis)) {
+            plugin.warningLog(inFlight.size() + " storage operations did not finish within " + timeoutMillis + "ms, their changes may be lost");
+        }
+        executor.shutdown();
+        plugin.debugLog("Storage I/O stopped, " + coalesced.get() + " writes were replaced by newer ones before they started");
+    }
+}
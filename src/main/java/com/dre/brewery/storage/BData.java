@@ -450,10 +450,10 @@ public class BData {
             return;
         }
         if (!initCauldrons.isEmpty()) {
-            BCauldron.bcauldrons.putAll(initCauldrons);
+            initCauldrons.forEach(BCauldron.bcauldrons::put);
         }
         if (!initBarrels.isEmpty()) {
-            Barrel.barrels.addAll(initBarrels);
+            Barrel.addBarrels(initBarrels);
         }
 
         if (!initWakeups.isEmpty()) {
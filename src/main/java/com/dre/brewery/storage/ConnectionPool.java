@@ -0,0 +1,290 @@
+package com.dre.brewery.storage;
+
+import com.dre.brewery.BreweryPlugin;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small pool of database connections, each with its own cache of prepared statements.
+ * <p>Connections are validated before they are handed out if they were idle for a while,
+ * and replaced when they are broken or older than the max lifetime.
+ * <p>Borrowed connections have to be closed to return them to the pool.
+ */
+public class ConnectionPool {
+
+    private static final long VALIDATE_AFTER_IDLE = 1000; // Validate connections that were idle for more than this ms
+    private static final int VALIDATION_TIMEOUT = 3; // Seconds
+    private static final int MAX_CACHED_STATEMENTS = 32; // Per connection
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long connectionTimeout;
+    private final long maxLifetime;
+
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    private int total;
+    private boolean closed;
+
+    // Metrics
+    private long borrowed;
+    private long waited;
+    private long totalWaitTime;
+    private long maxWaitTime;
+    private long created;
+    private long discarded;
+    private long timeouts;
+
+    /**
+     * @param factory Creates a new, ready to use connection
+     * @param maxSize Max number of open connections
+     * @param connectionTimeout Max ms to wait for a free connection
+     * @param maxLifetime Max ms a connection is used before it is replaced
+     */
+    public ConnectionPool(ConnectionFactory factory, int maxSize, long connectionTimeout, long maxLifetime) {
+        this.factory = factory;
+        this.maxSize = Math.max(1, maxSize);
+        this.connectionTimeout = connectionTimeout;
+        this.maxLifetime = maxLifetime;
+    }
+
+    /**
+     * Get a connection from the pool, opening a new one if none is free and the pool is not full.
+     * <p>Waits up to the connection timeout if all connections are in use.
+     *
+     * @return A working connection, close it to return it to the pool
+     * @throws SQLException if no connection could be opened or the timeout was reached
+     */
+    public PooledConnection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(connectionTimeout);
+        boolean didWait = false;
+
+        while (true) {
+            PooledConnection connection;
+            synchronized (this) {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("Connection pool is closed");
+                    }
+                    connection = idle.pollFirst();
+                    if (connection != null) {
+                        break;
+                    }
+                    if (total < maxSize) {
+                        total++; // Reserve the slot, the connection is opened outside the lock
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeouts++;
+                        throw new SQLException("Timed out after " + connectionTimeout + "ms waiting for a database connection (" + maxSize + " in use)");
+                    }
+                    didWait = true;
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection", e);
+                    }
+                }
+            }
+
+            if (connection == null) {
+                try {
+                    connection = new PooledConnection(factory.create());
+                } catch (SQLException | RuntimeException e) {
+                    release();
+                    throw e;
+                }
+                synchronized (this) {
+                    created++;
+                }
+            } else if (!isUsable(connection)) {
+                connection.closePhysically();
+                synchronized (this) {
+                    discarded++;
+                }
+                release();
+                continue;
+            }
+
+            long waitTime = System.nanoTime() - start;
+            synchronized (this) {
+                borrowed++;
+                if (didWait) {
+                    waited++;
+                    totalWaitTime += waitTime;
+                    maxWaitTime = Math.max(maxWaitTime, waitTime);
+                }
+            }
+            connection.inUse = true;
+            return connection;
+        }
+    }
+
+    private boolean isUsable(PooledConnection connection) {
+        long now = System.currentTimeMillis();
+        if (maxLifetime > 0 && now - connection.createdAt > maxLifetime) {
+            return false;
+        }
+        if (now - connection.lastUsed < VALIDATE_AFTER_IDLE) {
+            return true;
+        }
+        try {
+            return connection.connection.isValid(VALIDATION_TIMEOUT);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void giveBack(PooledConnection connection) {
+        connection.inUse = false;
+        connection.lastUsed = System.currentTimeMillis();
+        try {
+            if (connection.connection.isClosed()) {
+                connection.broken = true;
+            }
+        } catch (SQLException e) {
+            connection.broken = true;
+        }
+        boolean keep;
+        synchronized (this) {
+            keep = !closed && !connection.broken;
+            if (keep) {
+                idle.addFirst(connection); // LIFO, so unneeded connections stay idle and expire
+                notify();
+            } else if (connection.broken) {
+                discarded++;
+            }
+        }
+        if (!keep) {
+            connection.closePhysically();
+            release();
+        }
+    }
+
+    private synchronized void release() {
+        total--;
+        notify();
+    }
+
+    /**
+     * Close all idle connections and stop handing out new ones.
+     * <p>Connections currently in use are closed when they are returned.
+     */
+    public void close() {
+        PooledConnection[] toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = idle.toArray(new PooledConnection[0]);
+            idle.clear();
+            total -= toClose.length;
+            notifyAll();
+        }
+        for (PooledConnection connection : toClose) {
+            connection.closePhysically();
+        }
+    }
+
+    public synchronized String getStats() {
+        int idleCount = idle.size();
+        float avgWait = waited == 0 ? 0 : totalWaitTime / (float) waited / 1000000f;
+        return "Connection Pool: " + (total - idleCount) + " active, " + idleCount + " idle, max " + maxSize
+            + ", borrowed: " + borrowed + ", waited: " + waited
+            + String.format(" (avg %.2fms, max %.2fms)", avgWait, maxWaitTime / 1000000f)
+            + ", timeouts: " + timeouts + ", opened: " + created + ", discarded: " + discarded;
+    }
+
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    /**
+     * A Connection borrowed from the pool.
+     * <p>Statements from {@link #prepare(String)} are cached and must not be closed by the caller.
+     */
+    public class PooledConnection implements AutoCloseable {
+        private final Connection connection;
+        private final long createdAt = System.currentTimeMillis();
+        private long lastUsed = createdAt;
+        private boolean broken;
+        private boolean inUse;
+
+        private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Get a cached prepared statement for this sql, or prepare a new one.
+         * <p>The statement is reused by later calls, don't close it.
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement != null && !statement.isClosed()) {
+                statement.clearParameters();
+                statement.clearBatch();
+                return statement;
+            }
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+            if (statements.size() > MAX_CACHED_STATEMENTS) {
+                Iterator<PreparedStatement> iter = statements.values().iterator();
+                PreparedStatement eldest = iter.next();
+                iter.remove();
+                closeQuietly(eldest);
+            }
+            return statement;
+        }
+
+        /**
+         * Don't return this connection to the pool, for example after it failed in an unknown state
+         */
+        public void markBroken() {
+            broken = true;
+        }
+
+        /**
+         * Return the connection to the pool
+         */
+        @Override
+        public void close() {
+            if (inUse) {
+                giveBack(this);
+            }
+        }
+
+        private void closePhysically() {
+            for (PreparedStatement statement : statements.values()) {
+                closeQuietly(statement);
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                BreweryPlugin.getInstance().debugLog("Failed to close pooled connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.dre.brewery.storage;
+
+import com.dre.brewery.BCauldron;
+import com.dre.brewery.BPlayer;
+import com.dre.brewery.Barrel;
+import com.dre.brewery.BreweryPlugin;
+import com.dre.brewery.Wakeup;
+import com.dre.brewery.filedata.BConfig;
+import com.dre.brewery.storage.records.BarrelSnapshot;
+import com.dre.brewery.storage.records.BreweryMiscData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Loads all data from storage at startup.
+ * <p>If loading async, misc data, barrels, cauldrons, players and wakeups are loaded at the same time on worker threads,
+ * the records of each are deserialized on all cores. Barrels are only decoded there, creating them and adding everything
+ * to the plugin is done on the main thread.
+ * Until then, interacting with Barrels and Cauldrons is blocked, see {@link DataManager#isLoading()}
+ */
+class DataLoader {
+
+    private static final int MAX_THREADS = 4; // Barrels, Cauldrons, Players and Wakeups
+
+    private final BreweryPlugin plugin = BreweryPlugin.getInstance();
+    private final DataManager dataManager;
+    private final boolean lazyBarrels = BConfig.lazyBarrels;
+    private final Queue<String> timings = new ConcurrentLinkedQueue<>();
+    private long start;
+
+    DataLoader(DataManager dataManager) {
+        this.dataManager = dataManager;
+    }
+
+    /**
+     * @param async Load on worker threads, otherwise everything is loaded right now on this thread
+     */
+    void load(boolean async) {
+        start = System.nanoTime();
+        if (!async) {
+            DataManager.loadMiscData(phase("misc data", dataManager::getBreweryMiscData));
+            addLoaded(loadBarrels(), phase("cauldrons", dataManager::getAllCauldrons),
+                phase("players", dataManager::getAllPlayers), phase("wakeups", dataManager::getAllWakeups));
+            return;
+        }
+
+        DataManager.setLoading(true);
+        AtomicInteger threadId = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()), runnable -> {
+            Thread thread = new Thread(runnable, "Brewery Data Loader #" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        CompletableFuture<BreweryMiscData> miscData = CompletableFuture.supplyAsync(() -> phase("misc data", dataManager::getBreweryMiscData), executor);
+        // Barrels compute their age from the aging clock in the misc data, and nothing else uses it until loading is done
+        CompletableFuture<Collection<BarrelSnapshot>> barrels = miscData.thenApplyAsync(data -> {
+            DataManager.loadMiscData(data);
+            return loadBarrels();
+        }, executor);
+        CompletableFuture<Collection<BCauldron>> cauldrons = CompletableFuture.supplyAsync(() -> phase("cauldrons", dataManager::getAllCauldrons), executor);
+        CompletableFuture<Collection<BPlayer>> players = CompletableFuture.supplyAsync(() -> phase("players", dataManager::getAllPlayers), executor);
+        CompletableFuture<Collection<Wakeup>> wakeups = CompletableFuture.supplyAsync(() -> phase("wakeups", dataManager::getAllWakeups), executor);
+
+        CompletableFuture.allOf(barrels, cauldrons, players, wakeups).whenComplete((ignored, error) -> {
+            executor.shutdown();
+            if (error != null) {
+                // Stay in the loading state, so the missing data is not saved over the stored data
+                plugin.errorLog("Failed to load Brewery data! Disabling to protect the stored data", error);
+                BreweryPlugin.getScheduler().runTask(() -> plugin.getServer().getPluginManager().disablePlugin(plugin));
+                return;
+            }
+            BreweryPlugin.getScheduler().runTask(() -> {
+                addLoaded(barrels.join(), cauldrons.join(), players.join(), wakeups.join());
+                DataManager.setLoading(false);
+            });
+        });
+    }
+
+    private Collection<BarrelSnapshot> loadBarrels() {
+        if (lazyBarrels) {
+            // Contents are loaded with the chunks
+            return phase("barrels (without contents)", () -> dataManager.getAllBarrelSnapshots(false));
+        }
+        return phase("barrels", () -> dataManager.getAllBarrelSnapshots(true));
+    }
+
+    /**
+     * Run one phase of loading and remember how long it took
+     */
+    private <T> T phase(String name, Supplier<T> loader) {
+        long phaseStart = System.nanoTime();
+        T loaded = loader.get();
+        String count = loaded instanceof Collection<?> collection ? collection.size() + " " : "";
+        timings.add(String.format("%s%s (%.2fms)", count, name, (System.nanoTime() - phaseStart) / 1000000f));
+        return loaded;
+    }
+
+    /**
+     * Add the loaded data to the plugin, has to be called on the main thread
+     */
+    private void addLoaded(Collection<BarrelSnapshot> barrels, Collection<BCauldron> cauldrons, Collection<BPlayer> players, Collection<Wakeup> wakeups) {
+        long addStart = System.nanoTime();
+        // Creating the Barrels reads their blocks and creates their inventories, and regenerates bad bounds
+        List<Barrel> valid = new ArrayList<>(barrels.size());
+        for (BarrelSnapshot snapshot : barrels) {
+            Barrel barrel = snapshot.toBarrel();
+            if (barrel.getBody().getBounds() == null) {
+                // Broken, regenerating the bounds removed it
+                continue;
+            }
+            valid.add(barrel);
+        }
+        Barrel.addBarrels(valid);
+        if (lazyBarrels) {
+            Barrel.prefetchLoadedChunks();
+        }
+        // Cauldrons are keyed by position, not by their Block object, so a duplicate just replaces the earlier one
+        for (BCauldron cauldron : cauldrons) {
+            BCauldron.bcauldrons.put(cauldron.getBlock(), cauldron);
+        }
+        BCauldron.startParticles(cauldrons);
+        for (BPlayer player : players) {
+            BPlayer.getPlayers().put(player.getUuid(), player);
+        }
+        Wakeup.getWakeups().addAll(wakeups);
+        long end = System.nanoTime();
+
+        plugin.log(String.format("Loaded data in %.2fms&7:&a ", (end - start) / 1000000f) + String.join(", ", timings)
+            + String.format(", adding took %.2fms", (end - addStart) / 1000000f));
+    }
+}
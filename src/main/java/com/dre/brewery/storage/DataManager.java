@@ -10,18 +10,36 @@ import com.dre.brewery.Wakeup;
 import com.dre.brewery.filedata.BConfig;
 import com.dre.brewery.integration.bstats.Stats;
 import com.dre.brewery.storage.impls.FlatFileStorage;
+import com.dre.brewery.storage.impls.MVStoreStorage;
 import com.dre.brewery.storage.impls.MySQLStorage;
 import com.dre.brewery.storage.impls.SQLiteStorage;
+import com.dre.brewery.storage.records.BarrelSnapshot;
 import com.dre.brewery.storage.records.BreweryMiscData;
 import com.dre.brewery.storage.records.ConfiguredDataManager;
+import com.dre.brewery.storage.records.SerializableBPlayer;
+import com.dre.brewery.storage.records.SerializableCauldron;
+import com.dre.brewery.storage.records.SerializableWakeup;
+import com.dre.brewery.utility.BUtil;
+import com.github.Anon8281.universalScheduler.UniversalRunnable;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public abstract class DataManager {
 
@@ -29,31 +47,52 @@ public abstract class DataManager {
 
     protected static BreweryPlugin plugin = BreweryPlugin.getInstance();
     protected static long lastAutoSave = System.currentTimeMillis();
-
-    public abstract Barrel getBarrel(UUID id);
-    public abstract Collection<Barrel> getAllBarrels();
-    public abstract void saveAllBarrels(Collection<Barrel> barrels, boolean overwrite);
+    private static final int PARALLEL_THRESHOLD = 64; // Records to deserialize before it is worth spreading them over all cores
+    private static volatile boolean loading; // Data is being loaded at startup, see DataLoader
+    private static volatile Journal journal; // null if disabled, see BConfig.enableJournal
+    private static final long DRAIN_TIMEOUT_MILLIS = 10000; // How long to wait for queued writes when shutting down
+
+    private final AsyncDataManager async = new AsyncDataManager(this);
+
+    // Ids of things that were removed since the last save, to delete them from storage with the next save
+    private static final Set<UUID> removedBarrels = ConcurrentHashMap.newKeySet();
+    private static final Set<UUID> removedCauldrons = ConcurrentHashMap.newKeySet();
+    private static final Set<UUID> removedPlayers = ConcurrentHashMap.newKeySet();
+    private static final Set<UUID> removedWakeups = ConcurrentHashMap.newKeySet();
+
+    public abstract Barrel getBarrel(UUID id); // Creates the Barrel, has to be called on the main thread
+    public abstract Collection<BarrelSnapshot> getAllBarrelSnapshots(boolean withContents); // Any thread, without contents see BConfig.lazyBarrels
+    public abstract ItemStack[] getBarrelContents(UUID id);
+    public abstract void saveAllBarrels(Collection<BarrelSnapshot> barrels, boolean overwrite);
     public abstract void saveBarrel(Barrel barrel);
     public abstract void deleteBarrel(UUID id);
 
 
+    /**
+     * Creates the Barrels, has to be called on the main thread. Their data can be loaded on any thread with {@link #getAllBarrelSnapshots(boolean)}
+     */
+    public Collection<Barrel> getAllBarrels() {
+        return getAllBarrelSnapshots(true).stream().map(BarrelSnapshot::toBarrel).toList();
+    }
+
+
     public abstract BCauldron getCauldron(UUID id);
     public abstract Collection<BCauldron> getAllCauldrons();
-    public abstract void saveAllCauldrons(Collection<BCauldron> cauldrons, boolean overwrite);
+    public abstract void saveAllCauldrons(Collection<SerializableCauldron> cauldrons, boolean overwrite);
     public abstract void saveCauldron(BCauldron cauldron);
     public abstract void deleteCauldron(UUID id);
 
 
     public abstract BPlayer getPlayer(UUID playerUUID);
     public abstract Collection<BPlayer> getAllPlayers();
-    public abstract void saveAllPlayers(Collection<BPlayer> players, boolean overwrite);
+    public abstract void saveAllPlayers(Collection<SerializableBPlayer> players, boolean overwrite);
     public abstract void savePlayer(BPlayer player);
     public abstract void deletePlayer(UUID playerUUID);
 
 
     public abstract Wakeup getWakeup(UUID id);
     public abstract Collection<Wakeup> getAllWakeups();
-    public abstract void saveAllWakeups(Collection<Wakeup> wakeups, boolean overwrite);
+    public abstract void saveAllWakeups(Collection<SerializableWakeup> wakeups, boolean overwrite);
     public abstract void saveWakeup(Wakeup wakeup);
     public abstract void deleteWakeup(UUID id);
 
@@ -66,9 +105,8 @@ public abstract class DataManager {
         long interval = BConfig.autoSaveInterval * 60000L;
 
         if (System.currentTimeMillis() - lastAutoSave > interval) {
-            saveAll(true);
+            saveChanges(true);
             lastAutoSave = System.currentTimeMillis();
-            plugin.debugLog("Auto saved all data!");
         }
     }
 
@@ -77,33 +115,153 @@ public abstract class DataManager {
     }
 
     public void saveAll(boolean async, Runnable callback) {
-        Collection<Barrel> barrels = Barrel.getBarrels();
-        Collection<BCauldron> cauldrons = BCauldron.getBcauldrons().values();
-        Collection<BPlayer> bPlayers = BPlayer.getPlayers().values();
-        Collection<Wakeup> wakeups = Wakeup.getWakeups();
-
-        if (async) {
-            BreweryPlugin.getScheduler().runTaskAsynchronously(() -> {
-                doSave(barrels, cauldrons, bPlayers, wakeups);
+        save(new SaveSnapshot(false), async, callback);
+    }
+
+    /**
+     * Save only what was changed since the last save, and delete what was removed since then
+     */
+    public void saveChanges(boolean async) {
+        save(new SaveSnapshot(true), async, null);
+    }
+
+    /**
+     * Copy what needs saving on the main thread, over several ticks if async,
+     * then serialize and write it off the main thread if async
+     */
+    private void save(SaveSnapshot snapshot, boolean async, Runnable callback) {
+        if (loading) {
+            // Saving now would overwrite the stored data with what is not loaded yet
+            plugin.debugLog("Not saving, data is still loading");
+            if (callback != null) {
+                callback.run();
+            }
+            return;
+        }
+        Journal journal = DataManager.journal;
+        long journalMark = journal != null ? journal.mark() : 0;
+        CompletableFuture<Void> queued = this.async.queued();
+        Runnable write = () -> {
+            // Writes queued before the copy have older states, they must not be written over the copy
+            if (!this.async.await(queued, DRAIN_TIMEOUT_MILLIS)) {
+                plugin.warningLog("Queued storage writes are taking long, saving without waiting for them");
+            }
+            try {
+                writeSnapshot(snapshot);
+            } catch (RuntimeException e) {
+                plugin.errorLog("Failed to save data! It will be saved again with the next save", e);
+                // The journal still has everything, it is not truncated
+                if (async) {
+                    BreweryPlugin.getScheduler().runTask(snapshot::markUnsaved);
+                } else {
+                    snapshot.markUnsaved();
+                }
                 if (callback != null) {
                     callback.run();
                 }
-            });
-        } else {
-            doSave(barrels, cauldrons, bPlayers, wakeups);
+                return;
+            }
+            if (journal != null) {
+                // Everything journaled before the save started is in storage now
+                journal.truncate(journalMark);
+            }
             if (callback != null) {
                 callback.run();
             }
+        };
+        if (!async) {
+            snapshot.copyStep(true);
+            write.run();
+        } else if (snapshot.copyStep(false)) {
+            BreweryPlugin.getScheduler().runTaskAsynchronously(write);
+        } else {
+            new UniversalRunnable() {
+                @Override
+                public void run() {
+                    if (snapshot.copyStep(false)) {
+                        cancel();
+                        if (journal != null) {
+                            // The journal may have written older copies of what was copied since the mark, write newer ones after them
+                            journal.flush();
+                        }
+                        BreweryPlugin.getScheduler().runTaskAsynchronously(write);
+                    }
+                }
+            }.runTaskTimer(plugin, 1, 1);
         }
     }
 
-    private void doSave(Collection<Barrel> barrels, Collection<BCauldron> cauldrons, Collection<BPlayer> players, Collection<Wakeup> wakeups) {
-        saveBreweryMiscData(getLoadedMiscData());
-        saveAllBarrels(barrels, true);
-        saveAllCauldrons(cauldrons, true);
-        saveAllPlayers(players, true);
-        saveAllWakeups(wakeups, true);
-        plugin.debugLog("Saved all data!");
+    private void writeSnapshot(SaveSnapshot snapshot) {
+        long start = System.nanoTime();
+        boolean overwrite = !snapshot.isOnlyChanged();
+        saveBreweryMiscData(snapshot.getMiscData());
+        deleteRemoved(snapshot.getRemoved());
+        if (overwrite || !snapshot.getBarrels().isEmpty()) {
+            saveAllBarrels(snapshot.getBarrels(), overwrite && !snapshot.hasSkippedBarrels());
+        }
+        if (overwrite || !snapshot.getCauldrons().isEmpty()) {
+            saveAllCauldrons(snapshot.getCauldrons(), overwrite);
+        }
+        if (overwrite || !snapshot.getPlayers().isEmpty()) {
+            saveAllPlayers(snapshot.getPlayers(), overwrite);
+        }
+        if (overwrite || !snapshot.getWakeups().isEmpty()) {
+            saveAllWakeups(snapshot.getWakeups(), overwrite);
+        }
+        flush();
+        float writeTime = (System.nanoTime() - start) / 1000000f;
+
+        plugin.debugLog((overwrite ? "Saved all data: " : "Saved changes: ") + snapshot.getBarrels().size() + " barrels, " + snapshot.getCauldrons().size() + " cauldrons, "
+            + snapshot.getPlayers().size() + " players, " + snapshot.getWakeups().size() + " wakeups, deleted " + snapshot.getRemoved().size() + " removed. "
+            + String.format("Copying took %.2fms over %d ticks, serializing and writing %.2fms", snapshot.getCopyTime(), snapshot.getTicks(), writeTime));
+        if (BreweryPlugin.debug) {
+            String stats = getStats();
+            if (stats != null) {
+                plugin.debugLog(stats);
+            }
+        }
+    }
+
+    /**
+     * @return The same operations, run off the calling thread, see {@link AsyncDataManager}
+     */
+    public AsyncDataManager async() {
+        return async;
+    }
+
+    /**
+     * @return Debug info about the storage backend, or null if there is none
+     */
+    @Nullable
+    public String getStats() {
+        return null;
+    }
+
+    protected void flush() {
+        // Implemented in subclasses that buffer their writes
+    }
+
+    private void deleteRemoved(Removed removed) {
+        removed.barrels().forEach(this::deleteBarrel);
+        removed.cauldrons().forEach(this::deleteCauldron);
+        removed.players().forEach(this::deletePlayer);
+        removed.wakeups().forEach(this::deleteWakeup);
+    }
+
+    /**
+     * Can this storage have records in an older format, that {@link #migrateRecordFormat()} converts
+     */
+    public boolean hasRecordFormatMigration() {
+        return false;
+    }
+
+    /**
+     * Convert stored records to the current, compact format if they are in an older one.
+     *
+     * @return The number of converted records, always 0 if this storage has no older format
+     */
+    public int migrateRecordFormat() {
+        return 0;
     }
 
     protected void closeConnection() {
@@ -118,6 +276,8 @@ public abstract class DataManager {
     public void exit(boolean save, boolean async, Runnable callback) {
         if (save) {
             saveAll(async, () -> {
+                this.async.drain(DRAIN_TIMEOUT_MILLIS);
+                closeJournal();
                 this.closeConnection();
                 plugin.log("Closed connection from&7:&a " + this.getClass().getSimpleName());
                 if (callback != null) {
@@ -125,6 +285,8 @@ public abstract class DataManager {
                 }
             });
         } else {
+            this.async.drain(DRAIN_TIMEOUT_MILLIS);
+            closeJournal(); // Kept for the next start, if it was not saved
             this.closeConnection(); // let databases close their connections
             plugin.log("Closed connection from&7:&a " + this.getClass().getSimpleName());
             if (callback != null) {
@@ -133,11 +295,73 @@ public abstract class DataManager {
         }
     }
 
+    /**
+     * Open the journal and apply the changes in it that were not saved before the server stopped
+     */
+    private void openJournal(File file) {
+        try {
+            Journal opened = new Journal(file);
+            int replayed = opened.replay(this);
+            if (replayed > 0) {
+                plugin.log("Recovered&7:&a " + replayed + " &fchanges from the journal that were not saved before the server stopped");
+            }
+            journal = opened;
+        } catch (IOException | RuntimeException e) {
+            plugin.errorLog("Failed to open the journal! Changes between saves will not be journaled", e);
+        }
+    }
+
+    /**
+     * Write what changed since the last call to the journal, called every second on the main thread
+     */
+    public void flushJournal() {
+        Journal journal = DataManager.journal;
+        if (journal != null && !loading) {
+            journal.flush();
+        }
+    }
+
+    private static void closeJournal() {
+        Journal closing = journal;
+        if (closing != null) {
+            journal = null;
+            closing.close();
+        }
+    }
+
+    /**
+     * Load all data from storage into the plugin, in the background if BConfig.loadDataAsync
+     */
+    public void loadAll() {
+        new DataLoader(this).load(BConfig.loadDataAsync);
+    }
+
+    /**
+     * @return true while the data is loading at startup, Barrels and Cauldrons can't be used until it is done
+     */
+    public static boolean isLoading() {
+        return loading;
+    }
+
+    static void setLoading(boolean loading) {
+        DataManager.loading = loading;
+    }
+
+    /**
+     * Deserialize many records, spread over all cores if there are enough and loading async is allowed.
+     * <p>Records that could not be deserialized (null) are left out.
+     */
+    protected static <D, T> List<T> deserializeAll(List<D> data, Function<D, T> deserializer) {
+        Stream<D> stream = BConfig.loadDataAsync && data.size() >= PARALLEL_THRESHOLD ? data.parallelStream() : data.stream();
+        return stream.map(deserializer).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
     public static DataManager createDataManager(ConfiguredDataManager record) throws StorageInitException {
         DataManager dataManager = switch (record.type()) {
             case FLATFILE -> new FlatFileStorage(record);
             case MYSQL -> new MySQLStorage(record);
             case SQLITE -> new SQLiteStorage(record);
+            case MVSTORE -> new MVStoreStorage(record);
         };
 
         // Legacy data migration
@@ -155,17 +379,106 @@ public abstract class DataManager {
         }
 
 
+        if (BConfig.enableJournal) {
+            dataManager.openJournal(new File(plugin.getDataFolder(), "journal.dat"));
+        }
+
         plugin.log("DataManager created&7:&a " + record.type().getFormattedName());
         return dataManager;
     }
 
 
 
+    // Changed and removed things
+
+    public static void markChanged(Barrel barrel) {
+        Journal journal = DataManager.journal;
+        if (journal != null) {
+            journal.changed(barrel.getId(), barrel);
+        }
+    }
+
+    public static void markChanged(BCauldron cauldron) {
+        Journal journal = DataManager.journal;
+        if (journal != null) {
+            journal.changed(cauldron.getId(), cauldron);
+        }
+    }
+
+    public static void markChanged(Wakeup wakeup) {
+        Journal journal = DataManager.journal;
+        if (journal != null) {
+            journal.changed(wakeup.getId(), wakeup);
+        }
+    }
+
+    public static void markRemoved(Barrel barrel) {
+        removedBarrels.add(barrel.getId());
+        journalRemoved(barrel.getId(), Barrel.class);
+    }
+
+    public static void markRemoved(BCauldron cauldron) {
+        removedCauldrons.add(cauldron.getId());
+        journalRemoved(cauldron.getId(), BCauldron.class);
+    }
+
+    public static void markRemoved(BPlayer player) {
+        UUID id = BUtil.uuidFromString(player.getUuid());
+        if (id != null) {
+            removedPlayers.add(id);
+            journalRemoved(id, BPlayer.class);
+        }
+    }
+
+    public static void markRemoved(Wakeup wakeup) {
+        removedWakeups.add(wakeup.getId());
+        journalRemoved(wakeup.getId(), Wakeup.class);
+    }
+
+    private static void journalRemoved(UUID id, Class<?> type) {
+        Journal journal = DataManager.journal;
+        if (journal != null) {
+            journal.removed(id, type);
+        }
+    }
+
+    static Removed drainRemoved() {
+        List<UUID> players = drain(removedPlayers);
+        // Players are added again with the same id when they get drunk again
+        players.removeIf(id -> BPlayer.getPlayers().containsKey(id.toString()));
+        return new Removed(drain(removedBarrels), drain(removedCauldrons), players, drain(removedWakeups));
+    }
+
+    /**
+     * Deleting these failed, delete them with the next save
+     */
+    static void restoreRemoved(Removed removed) {
+        removedBarrels.addAll(removed.barrels());
+        removedCauldrons.addAll(removed.cauldrons());
+        removedPlayers.addAll(removed.players());
+        removedWakeups.addAll(removed.wakeups());
+    }
+
+    private static List<UUID> drain(Set<UUID> removed) {
+        List<UUID> drained = new ArrayList<>(removed);
+        drained.forEach(removed::remove);
+        return drained;
+    }
+
+    record Removed(List<UUID> barrels, List<UUID> cauldrons, List<UUID> players, List<UUID> wakeups) {
+        int size() {
+            return barrels.size() + cauldrons.size() + players.size() + wakeups.size();
+        }
+    }
+
+
+
     // Utility
 
     public static void loadMiscData(BreweryMiscData miscData) {
         Brew.installTime = miscData.installTime();
         MCBarrel.mcBarrelTime = miscData.mcBarrelTime();
+        Barrel.setAgingClock(miscData.agingClock());
         Brew.loadPrevSeeds(miscData.prevSaveSeeds());
 
 
@@ -193,7 +506,8 @@ public abstract class DataManager {
                 MCBarrel.mcBarrelTime,
                 Brew.getPrevSeeds(),
                 brewsCreated,
-                brewsCreated.hashCode()
+                brewsCreated.hashCode(),
+                Barrel.getAgingClock()
         );
     }
 
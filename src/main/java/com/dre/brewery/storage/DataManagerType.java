@@ -2,10 +2,11 @@ package com.dre.brewery.storage;
 
 public enum DataManagerType {
     // We can add whatever type of storage type we want! As long as it's implemented properly.
-    // Maybe add: h2, mongodb, sqlite?
+    // Maybe add: mongodb?
     FLATFILE("FlatFile"),
     MYSQL("MySQL"),
-    SQLITE("SQLite");
+    SQLITE("SQLite"),
+    MVSTORE("MVStore");
 
     private final String formattedName;
 
@@ -0,0 +1,395 @@
+package com.dre.brewery.storage;
+
+import com.dre.brewery.BCauldron;
+import com.dre.brewery.BPlayer;
+import com.dre.brewery.Barrel;
+import com.dre.brewery.BreweryPlugin;
+import com.dre.brewery.Wakeup;
+import com.dre.brewery.storage.records.BarrelSnapshot;
+import com.dre.brewery.storage.records.BreweryMiscData;
+import com.dre.brewery.storage.records.SerializableBPlayer;
+import com.dre.brewery.storage.records.SerializableCauldron;
+import com.dre.brewery.storage.records.SerializableThing;
+import com.dre.brewery.storage.records.SerializableWakeup;
+import com.dre.brewery.storage.serialization.BinaryRecordCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the changes since the last save, so they are not lost if the server crashes between autosaves.
+ * <p>Changes are only collected as they happen, see {@link DataManager#markChanged(Barrel)}.
+ * Once a second they are copied on the main thread and written as one batch by the journal thread, followed by a single fsync.
+ * <p>On startup the journal is replayed over the stored data. After each save, what was written before the save started is cut off.
+ * <p>Entry: int length, byte op, byte kind, payload, int CRC32 of op, kind and payload.
+ * An entry that was only partly written when the server crashed fails its length or checksum and ends the replay.
+ */
+class Journal {
+
+    private static final byte OP_UPSERT = 1;
+    private static final byte OP_DELETE = 2;
+
+    private static final byte KIND_BARREL = 1;
+    private static final byte KIND_CAULDRON = 2;
+    private static final byte KIND_PLAYER = 3;
+    private static final byte KIND_WAKEUP = 4;
+    private static final byte KIND_MISC = 5;
+
+    private static final int MAX_ENTRY_SIZE = 64 * 1024 * 1024; // Anything larger is a corrupted length
+
+    private final BreweryPlugin plugin = BreweryPlugin.getInstance();
+    private final File file;
+    private final File tempFile;
+    private final BinaryRecordCodec codec = new BinaryRecordCodec();
+    private final ExecutorService writer; // One thread, so the batches are written in order
+    private FileChannel channel;
+    private volatile long end; // Size of the journal after the last write
+
+    // Changed or removed since the last flush, by id. Only the latest state is written
+    private final Map<UUID, Object> pending = new ConcurrentHashMap<>();
+    // Players are not marked when they change, the last written state is compared instead. Main thread only
+    private final Map<String, SerializableBPlayer> writtenPlayers = new HashMap<>();
+    private double writtenClock = -1;
+
+    private record Removal(UUID id, byte kind) {
+    }
+
+    Journal(File file) throws IOException {
+        this.file = file;
+        this.tempFile = new File(file.getPath() + ".tmp");
+        this.channel = open();
+        this.end = channel.size();
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Brewery Journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    void changed(UUID id, Object thing) {
+        pending.put(id, thing);
+    }
+
+    void removed(UUID id, Class<?> type) {
+        byte kind;
+        if (type == Barrel.class) {
+            kind = KIND_BARREL;
+        } else if (type == BCauldron.class) {
+            kind = KIND_CAULDRON;
+        } else if (type == BPlayer.class) {
+            kind = KIND_PLAYER;
+        } else {
+            kind = KIND_WAKEUP;
+        }
+        pending.put(id, new Removal(id, kind));
+    }
+
+    /**
+     * Copy what changed since the last flush and write it in the background, has to be called on the main thread
+     */
+    void flush() {
+        List<Object> batch = new ArrayList<>();
+        List<Removal> removals = new ArrayList<>();
+        for (Map.Entry<UUID, Object> entry : pending.entrySet()) {
+            Object thing = entry.getValue();
+            pending.remove(entry.getKey(), thing);
+            try {
+                if (thing instanceof Barrel barrel) {
+                    // Barrels are also created just to check if a structure is a Barrel, only write real ones
+                    if (barrel.isResident() && barrel.isLoaded()) {
+                        batch.add(BarrelSnapshot.of(barrel));
+                    }
+                } else if (thing instanceof BCauldron cauldron) {
+                    if (BCauldron.bcauldrons.get(cauldron.getBlock()) == cauldron) {
+                        batch.add(new SerializableCauldron(cauldron));
+                    }
+                } else if (thing instanceof Wakeup wakeup) {
+                    if (wakeup.isActive()) {
+                        batch.add(new SerializableWakeup(wakeup));
+                    }
+                } else if (thing instanceof Removal removal) {
+                    if (removal.kind == KIND_PLAYER) {
+                        writtenPlayers.remove(removal.id.toString());
+                        // Players are added again with the same id when they get drunk again
+                        if (BPlayer.getPlayers().containsKey(removal.id.toString())) {
+                            continue;
+                        }
+                    }
+                    removals.add(removal);
+                }
+            } catch (RuntimeException e) {
+                plugin.errorLog("Failed to copy " + thing.getClass().getSimpleName() + " for the journal", e);
+            }
+        }
+        for (BPlayer player : BPlayer.getPlayers().values()) {
+            if (player.needsSave()) {
+                SerializableBPlayer record = new SerializableBPlayer(player);
+                if (!record.equals(writtenPlayers.put(record.id(), record))) {
+                    batch.add(record);
+                }
+            }
+        }
+
+        double clock = Barrel.getAgingClock();
+        if (batch.isEmpty() && removals.isEmpty() && clock == writtenClock) {
+            return;
+        }
+        // Barrels are saved with the aging clock, journal it with them
+        writtenClock = clock;
+        batch.add(DataManager.getLoadedMiscData());
+
+        writer.execute(() -> write(batch, removals));
+    }
+
+    private void write(List<Object> batch, List<Removal> removals) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 * batch.size());
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (Object record : batch) {
+                byte[] payload = record instanceof BarrelSnapshot barrel ? codec.encode(barrel) : codec.encode((SerializableThing) record);
+                writeEntry(out, OP_UPSERT, kindOf(record), payload);
+            }
+            for (Removal removal : removals) {
+                ByteBuffer id = ByteBuffer.allocate(16);
+                id.putLong(removal.id.getMostSignificantBits()).putLong(removal.id.getLeastSignificantBits());
+                writeEntry(out, OP_DELETE, removal.kind, id.array());
+            }
+
+            synchronized (this) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                channel.position(channel.size());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                end = channel.size();
+            }
+        } catch (IOException | RuntimeException e) {
+            plugin.errorLog("Failed to write to the journal!", e);
+        }
+    }
+
+    private static byte kindOf(Object record) {
+        if (record instanceof BarrelSnapshot) {
+            return KIND_BARREL;
+        } else if (record instanceof SerializableCauldron) {
+            return KIND_CAULDRON;
+        } else if (record instanceof SerializableBPlayer) {
+            return KIND_PLAYER;
+        } else if (record instanceof SerializableWakeup) {
+            return KIND_WAKEUP;
+        }
+        return KIND_MISC;
+    }
+
+    private static void writeEntry(DataOutputStream out, byte op, byte kind, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(op);
+        crc.update(kind);
+        crc.update(payload);
+        out.writeInt(payload.length + 2);
+        out.writeByte(op);
+        out.writeByte(kind);
+        out.write(payload);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Called on the main thread when a save starts copying.
+     *
+     * @return The end of the journal, everything before it will be in storage once the save is done
+     */
+    long mark() {
+        // Players compare against what was written, the save may have reset their changes
+        writtenPlayers.clear();
+        return end;
+    }
+
+    /**
+     * Cut off everything before the mark, after the save that started at the mark is done
+     */
+    void truncate(long mark) {
+        writer.execute(() -> cut(mark));
+    }
+
+    private synchronized void cut(long mark) {
+        try {
+            long size = channel.size();
+            if (mark >= size) {
+                channel.truncate(0);
+                channel.force(true);
+                end = 0;
+                return;
+            }
+            if (mark <= 0) {
+                return;
+            }
+            // Copy the rest into a new file, so a crash while cutting leaves either the old or the new journal
+            ByteBuffer rest = read(mark, size);
+            try (FileChannel temp = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (rest.hasRemaining()) {
+                    temp.write(rest);
+                }
+                temp.force(true);
+            }
+            channel.close();
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            channel = open();
+            end = channel.size();
+        } catch (IOException e) {
+            plugin.errorLog("Failed to truncate the journal!", e);
+        }
+    }
+
+    /**
+     * Apply the journaled changes to the storage and clear the journal, called at startup before loading
+     *
+     * @return The number of replayed changes
+     */
+    synchronized int replay(DataManager dataManager) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = read(0, size);
+
+        // Only the latest state of each thing counts
+        Map<String, Object> latest = new LinkedHashMap<>();
+        BreweryMiscData misc = null;
+        int entries = 0;
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt();
+            if (length < 2 || length > MAX_ENTRY_SIZE || buffer.remaining() < length + 4) {
+                plugin.warningLog("The journal ends with an incomplete entry, ignoring it");
+                break;
+            }
+            byte op = buffer.get();
+            byte kind = buffer.get();
+            byte[] payload = new byte[length - 2];
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(op);
+            crc.update(kind);
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt()) {
+                plugin.warningLog("The journal ends with a corrupted entry, ignoring it");
+                break;
+            }
+            entries++;
+
+            if (op == OP_DELETE) {
+                ByteBuffer id = ByteBuffer.wrap(payload);
+                UUID uuid = new UUID(id.getLong(), id.getLong());
+                latest.put(kind + ":" + uuid, new Removal(uuid, kind));
+            } else if (kind == KIND_MISC) {
+                misc = codec.decodeMisc(payload);
+            } else {
+                Object record = switch (kind) {
+                    case KIND_BARREL -> codec.decodeBarrelSnapshot(payload);
+                    case KIND_CAULDRON -> codec.decodeCauldron(payload);
+                    case KIND_PLAYER -> codec.decodePlayer(payload);
+                    default -> codec.decodeWakeup(payload);
+                };
+                if (record != null) {
+                    String id = record instanceof BarrelSnapshot barrel ? barrel.id().toString() : ((SerializableThing) record).getId();
+                    latest.put(kind + ":" + id, record);
+                }
+            }
+        }
+
+        List<BarrelSnapshot> barrels = new ArrayList<>();
+        List<SerializableCauldron> cauldrons = new ArrayList<>();
+        List<SerializableBPlayer> players = new ArrayList<>();
+        List<SerializableWakeup> wakeups = new ArrayList<>();
+        for (Object thing : latest.values()) {
+            if (thing instanceof BarrelSnapshot barrel) {
+                barrels.add(barrel);
+            } else if (thing instanceof SerializableCauldron cauldron) {
+                cauldrons.add(cauldron);
+            } else if (thing instanceof SerializableBPlayer player) {
+                players.add(player);
+            } else if (thing instanceof SerializableWakeup wakeup) {
+                wakeups.add(wakeup);
+            } else if (thing instanceof Removal removal) {
+                switch (removal.kind) {
+                    case KIND_BARREL -> dataManager.deleteBarrel(removal.id);
+                    case KIND_CAULDRON -> dataManager.deleteCauldron(removal.id);
+                    case KIND_PLAYER -> dataManager.deletePlayer(removal.id);
+                    default -> dataManager.deleteWakeup(removal.id);
+                }
+            }
+        }
+        if (misc != null) {
+            dataManager.saveBreweryMiscData(misc);
+        }
+        dataManager.saveAllBarrels(barrels, false);
+        dataManager.saveAllCauldrons(cauldrons, false);
+        dataManager.saveAllPlayers(players, false);
+        dataManager.saveAllWakeups(wakeups, false);
+        dataManager.flush();
+
+        channel.truncate(0);
+        channel.force(true);
+        end = 0;
+        return entries;
+    }
+
+    private ByteBuffer read(long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, from + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Wait for the pending writes and close the journal
+     */
+    void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.warningLog("Timed out waiting for the journal to be written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                plugin.errorLog("Failed to close the journal!", e);
+            }
+        }
+    }
+}
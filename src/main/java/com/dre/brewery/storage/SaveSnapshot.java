@@ -0,0 +1,215 @@
+package com.dre.brewery.storage;
+
+import com.dre.brewery.BCauldron;
+import com.dre.brewery.BPlayer;
+import com.dre.brewery.Barrel;
+import com.dre.brewery.BreweryPlugin;
+import com.dre.brewery.Wakeup;
+import com.dre.brewery.storage.records.BarrelSnapshot;
+import com.dre.brewery.storage.records.BreweryMiscData;
+import com.dre.brewery.storage.records.SerializableBPlayer;
+import com.dre.brewery.storage.records.SerializableCauldron;
+import com.dre.brewery.storage.records.SerializableWakeup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * First phase of saving: copies everything that needs saving on the main thread.
+ * <p>Copying the Barrels is spread over several ticks if it takes too long, so large servers don't lag on save.
+ * The copies are then serialized and written off the main thread, see DataManager.
+ */
+class SaveSnapshot {
+
+    private static final long TICK_BUDGET = 5_000_000; // Nanoseconds to spend copying per tick
+
+    private final boolean onlyChanged;
+    private final List<Barrel> barrelsToCopy;
+    private int barrelIndex;
+    private boolean skippedBarrels;
+    private long copyTime;
+    private int ticks;
+
+    private final List<BarrelSnapshot> barrels = new ArrayList<>();
+    private final List<SerializableCauldron> cauldrons = new ArrayList<>();
+    private final List<SerializableBPlayer> players = new ArrayList<>();
+    private final List<SerializableWakeup> wakeups = new ArrayList<>();
+    // What was copied and marked as saved, to mark it again if writing fails
+    private final List<Barrel> copiedBarrels = new ArrayList<>();
+    private final List<BCauldron> copiedCauldrons = new ArrayList<>();
+    private final List<BPlayer> copiedPlayers = new ArrayList<>();
+    private final List<Wakeup> copiedWakeups = new ArrayList<>();
+    private BreweryMiscData miscData;
+    private DataManager.Removed removed;
+
+    /**
+     * @param onlyChanged Only copy what was changed since the last save, otherwise everything
+     */
+    SaveSnapshot(boolean onlyChanged) {
+        this.onlyChanged = onlyChanged;
+        this.barrelsToCopy = new ArrayList<>(Barrel.getBarrels());
+    }
+
+    /**
+     * Copy as much as fits into this tick, has to be called on the main thread.
+     *
+     * @param untilDone Copy everything now, ignoring the time budget
+     * @return true if everything was copied
+     */
+    boolean copyStep(boolean untilDone) {
+        long start = System.nanoTime();
+        ticks++;
+        while (barrelIndex < barrelsToCopy.size()) {
+            Barrel barrel = barrelsToCopy.get(barrelIndex++);
+            if (!barrel.isResident()) {
+                // Contents are not loaded, storage already has them
+                skippedBarrels = true;
+            } else if (!onlyChanged || barrel.needsSave()) {
+                try {
+                    barrels.add(BarrelSnapshot.of(barrel));
+                    barrel.setNeedsSave(false);
+                    copiedBarrels.add(barrel);
+                } catch (RuntimeException e) {
+                    BreweryPlugin.getInstance().errorLog("Failed to copy Barrel for saving: " + barrel.getId(), e);
+                    // Missing from this save, the stored one must not be deleted by overwriting
+                    skippedBarrels = true;
+                }
+            }
+            if (!untilDone && System.nanoTime() - start > TICK_BUDGET) {
+                copyTime += System.nanoTime() - start;
+                return false;
+            }
+        }
+
+        // The rest is small, copy it all at once
+        for (BCauldron cauldron : BCauldron.bcauldrons.values()) {
+            if (!onlyChanged || cauldron.needsSave()) {
+                cauldron.setNeedsSave(false);
+                cauldrons.add(new SerializableCauldron(cauldron));
+                copiedCauldrons.add(cauldron);
+            }
+        }
+        for (BPlayer player : BPlayer.getPlayers().values()) {
+            if (!onlyChanged || player.needsSave()) {
+                player.setNeedsSave(false);
+                players.add(new SerializableBPlayer(player));
+                copiedPlayers.add(player);
+            }
+        }
+        for (Wakeup wakeup : Wakeup.getWakeups()) {
+            if (wakeup.isActive() && (!onlyChanged || wakeup.needsSave())) {
+                wakeup.setNeedsSave(false);
+                wakeups.add(new SerializableWakeup(wakeup));
+                copiedWakeups.add(wakeup);
+            }
+        }
+        miscData = DataManager.getLoadedMiscData();
+
+        // Things may have been removed while we were copying over several ticks, don't save them again
+        removed = DataManager.drainRemoved();
+        if (!removed.barrels().isEmpty()) {
+            Set<UUID> ids = new HashSet<>(removed.barrels());
+            barrels.removeIf(barrel -> ids.contains(barrel.id()));
+        }
+        if (!removed.cauldrons().isEmpty()) {
+            Set<String> ids = toStrings(removed.cauldrons());
+            cauldrons.removeIf(cauldron -> ids.contains(cauldron.id()));
+        }
+        if (!removed.wakeups().isEmpty()) {
+            Set<String> ids = toStrings(removed.wakeups());
+            wakeups.removeIf(wakeup -> ids.contains(wakeup.id()));
+        }
+
+        copyTime += System.nanoTime() - start;
+        return true;
+    }
+
+    /**
+     * Writing this snapshot failed, so everything in it has to be saved again with the next save.
+     * <p>Has to be called on the main thread
+     */
+    void markUnsaved() {
+        // Only what still exists, removed things must not be written again
+        Set<Barrel> current = new HashSet<>(Barrel.getBarrels());
+        for (Barrel barrel : copiedBarrels) {
+            if (current.contains(barrel)) {
+                barrel.setNeedsSave(true);
+            }
+        }
+        for (BCauldron cauldron : copiedCauldrons) {
+            if (BCauldron.get(cauldron.getBlock()) == cauldron) {
+                cauldron.setNeedsSave(true);
+            }
+        }
+        for (BPlayer player : copiedPlayers) {
+            if (BPlayer.getPlayers().get(player.getUuid()) == player) {
+                player.setNeedsSave(true);
+            }
+        }
+        for (Wakeup wakeup : copiedWakeups) {
+            if (wakeup.isActive()) {
+                wakeup.setNeedsSave(true);
+            }
+        }
+        if (removed != null) {
+            DataManager.restoreRemoved(removed);
+        }
+    }
+
+    private static Set<String> toStrings(List<UUID> ids) {
+        Set<String> strings = new HashSet<>();
+        for (UUID id : ids) {
+            strings.add(id.toString());
+        }
+        return strings;
+    }
+
+    boolean isOnlyChanged() {
+        return onlyChanged;
+    }
+
+    /**
+     * Barrels without loaded contents, or that failed to copy, were left out, so the stored Barrels must not be replaced
+     */
+    boolean hasSkippedBarrels() {
+        return skippedBarrels;
+    }
+
+    List<BarrelSnapshot> getBarrels() {
+        return barrels;
+    }
+
+    List<SerializableCauldron> getCauldrons() {
+        return cauldrons;
+    }
+
+    List<SerializableBPlayer> getPlayers() {
+        return players;
+    }
+
+    List<SerializableWakeup> getWakeups() {
+        return wakeups;
+    }
+
+    BreweryMiscData getMiscData() {
+        return miscData;
+    }
+
+    DataManager.Removed getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Time spent copying on the main thread, in ms
+     */
+    float getCopyTime() {
+        return copyTime / 1000000f;
+    }
+
+    int getTicks() {
+        return ticks;
+    }
+}
@@ -0,0 +1,10 @@
+package com.dre.brewery.storage;
+
+/**
+ * Writing to storage failed, what was written has to be written again
+ */
+public class StorageWriteException extends RuntimeException {
+    public StorageWriteException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -4,14 +4,18 @@ import com.dre.brewery.BCauldron;
 import com.dre.brewery.BIngredients;
 import com.dre.brewery.BPlayer;
 import com.dre.brewery.Barrel;
+import com.dre.brewery.BreweryPlugin;
 import com.dre.brewery.Wakeup;
 import com.dre.brewery.storage.serialization.BukkitSerialization;
 import com.dre.brewery.storage.StorageInitException;
+import com.dre.brewery.storage.records.BarrelSnapshot;
 import com.dre.brewery.storage.records.BreweryMiscData;
 import com.dre.brewery.storage.records.ConfiguredDataManager;
+import com.dre.brewery.storage.records.SerializableBPlayer;
+import com.dre.brewery.storage.records.SerializableCauldron;
+import com.dre.brewery.storage.records.SerializableWakeup;
 import com.dre.brewery.storage.DataManager;
 import com.dre.brewery.utility.BUtil;
-import com.dre.brewery.utility.BoundingBox;
 import org.bukkit.Location;
 import org.bukkit.block.Block;
 import org.bukkit.configuration.ConfigurationSection;
@@ -20,6 +24,10 @@ import org.bukkit.inventory.ItemStack;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -27,10 +35,23 @@ import java.util.List;
 import java.util.UUID;
 
 
+/**
+ * Stores all data in one YAML file.
+ * <p>Changes are made to the loaded document, which is written to disk as a whole. Bulk saves write it once at the end,
+ * single saves and deletes are collected and written together shortly after.
+ * <p>The file is written to a temporary file first and then moved over the old one, so a crash while saving can't leave a broken file.
+ */
 public class FlatFileStorage extends DataManager {
 
+    private static final long FLUSH_DELAY = 40; // Ticks to collect single changes before writing
+
     private final File rawFile;
+    private final File tempFile;
     private final YamlConfiguration dataFile;
+    private final Object writeLock = new Object();
+    private long version; // Increased on every change of the document
+    private volatile long writtenVersion;
+    private boolean flushScheduled;
 
     public FlatFileStorage(ConfiguredDataManager record) throws StorageInitException {
         String fileName = record.database() + ".yml";
@@ -44,74 +65,157 @@ public class FlatFileStorage extends DataManager {
             }
         }
 
+        this.tempFile = new File(plugin.getDataFolder(), fileName + ".tmp");
         this.dataFile = YamlConfiguration.loadConfiguration(rawFile);
     }
 
 
-    private void save() {
+    /**
+     * Write the change soon, together with any other changes made until then
+     */
+    private synchronized void save() {
+        version++;
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
         try {
-            dataFile.save(rawFile);
-        } catch (IOException e) {
-            plugin.errorLog("Failed to save to Flatfile!", e);
+            BreweryPlugin.getScheduler().runTaskLaterAsynchronously(this::flush, FLUSH_DELAY);
+        } catch (RuntimeException e) {
+            // Can't schedule while disabling, write now instead
+            flushScheduled = false;
+            flush();
         }
     }
 
+    /**
+     * Write the document to disk now, if it was changed since the last write
+     */
     @Override
-    public Barrel getBarrel(UUID id) {
-        String path = "barrels." + id;
+    protected void flush() {
+        String data;
+        long dataVersion;
+        synchronized (this) {
+            flushScheduled = false;
+            if (version == writtenVersion) {
+                return;
+            }
+            data = dataFile.saveToString();
+            dataVersion = version;
+        }
 
-        Block spigot = deserializeLocation(dataFile.getString(path + ".spigot")).getBlock();
-        BoundingBox bounds = BoundingBox.fromPoints(dataFile.getIntegerList(path + ".bounds"));
-        float time = (float) dataFile.getDouble(path + ".time", 0.0);
-        byte sign = (byte) dataFile.getInt(path + ".sign", 0);
-        ItemStack[] items = BukkitSerialization.itemStackArrayFromBase64(dataFile.getString(path + ".items", null));
+        synchronized (writeLock) {
+            // A later flush may have already written a newer document
+            if (dataVersion <= writtenVersion) {
+                return;
+            }
+            try {
+                Files.write(tempFile.toPath(), data.getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(tempFile.toPath(), rawFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile.toPath(), rawFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                writtenVersion = dataVersion;
+            } catch (IOException e) {
+                plugin.errorLog("Failed to save to Flatfile!", e);
+            }
+        }
+    }
 
+    @Override
+    protected void closeConnection() {
+        flush();
+    }
 
-        return new Barrel(spigot, sign, bounds, items, time, id);
+    @Override
+    public Barrel getBarrel(UUID id) {
+        BarrelSnapshot barrel;
+        synchronized (this) {
+            barrel = getBarrelSnapshot(id.toString(), true);
+        }
+        return barrel != null ? barrel.toBarrel() : null;
     }
 
     @Override
-    public Collection<Barrel> getAllBarrels() {
+    public synchronized Collection<BarrelSnapshot> getAllBarrelSnapshots(boolean withContents) {
         ConfigurationSection section = dataFile.getConfigurationSection("barrels");
         if (section == null) {
             return Collections.emptyList();
         }
 
-        List<Barrel> barrels = new ArrayList<>();
+        // The document is locked and only read, so the records can be deserialized in parallel
+        return deserializeAll(new ArrayList<>(section.getKeys(false)), key -> getBarrelSnapshot(key, withContents));
+    }
+
+    private BarrelSnapshot getBarrelSnapshot(String id, boolean withContents) {
+        String path = "barrels." + id;
 
-        for (String key : section.getKeys(false)) {
-            Barrel barrel = getBarrel(BUtil.uuidFromString(key));
-            if (barrel != null) {
-                barrels.add(barrel);
+        Location spigot = deserializeLocation(dataFile.getString(path + ".spigot"));
+        if (spigot == null) {
+            return null;
+        }
+        List<Integer> bounds = dataFile.getIntegerList(path + ".bounds");
+        float time = (float) dataFile.getDouble(path + ".time", 0.0);
+        // Unchanged Barrels are not saved every time, the aging since it was saved is added when creating the Barrel
+        double clock = dataFile.contains(path + ".clock") ? dataFile.getDouble(path + ".clock") : Barrel.getAgingClock();
+        byte sign = (byte) dataFile.getInt(path + ".sign", 0);
+        ItemStack[] items = null;
+        if (withContents) {
+            items = BukkitSerialization.itemStackArrayFromBase64(dataFile.getString(path + ".items", null));
+            if (items == null) {
+                items = new ItemStack[0];
             }
         }
-        return barrels;
+
+        return new BarrelSnapshot(BUtil.uuidFromString(id), spigot, bounds, time, clock, sign, items, null);
     }
 
     @Override
-    public void saveAllBarrels(Collection<Barrel> barrels, boolean overwrite) {
-        if (overwrite) {
-            dataFile.set("barrels", null);
+    public synchronized ItemStack[] getBarrelContents(UUID id) {
+        return BukkitSerialization.itemStackArrayFromBase64(dataFile.getString("barrels." + id + ".items", null));
+    }
+
+    @Override
+    public void saveAllBarrels(Collection<BarrelSnapshot> barrels, boolean overwrite) {
+        // Serialize the items before locking the document, that is the slow part
+        List<String> items = new ArrayList<>(barrels.size());
+        for (BarrelSnapshot barrel : barrels) {
+            items.add(BukkitSerialization.itemStackArrayToBase64(barrel.items()));
         }
-        for (Barrel barrel : barrels) {
-            saveBarrel(barrel);
+
+        synchronized (this) {
+            if (overwrite) {
+                dataFile.set("barrels", null);
+            }
+            int i = 0;
+            for (BarrelSnapshot barrel : barrels) {
+                setBarrel(barrel, items.get(i++));
+            }
+            save();
         }
     }
 
     @Override
-    public void saveBarrel(Barrel barrel) {
-        String path = "barrels." + barrel.getId();
-
-        dataFile.set(path + ".spigot", serializeLocation(barrel.getSpigot().getLocation()));
-        dataFile.set(path + ".bounds", barrel.getBody().getBounds().serialize());
-        dataFile.set(path + ".time", barrel.getTime());
-        dataFile.set(path + ".sign", barrel.getBody().getSignoffset());
-        dataFile.set(path + ".items", BukkitSerialization.itemStackArrayToBase64(barrel.getInventory().getContents()));
+    public synchronized void saveBarrel(Barrel barrel) {
+        BarrelSnapshot snapshot = BarrelSnapshot.of(barrel);
+        setBarrel(snapshot, BukkitSerialization.itemStackArrayToBase64(snapshot.items()));
         save();
     }
 
+    private void setBarrel(BarrelSnapshot barrel, String items) {
+        String path = "barrels." + barrel.id();
+
+        dataFile.set(path + ".spigot", serializeLocation(barrel.spigot()));
+        dataFile.set(path + ".bounds", barrel.bounds());
+        dataFile.set(path + ".time", barrel.time());
+        dataFile.set(path + ".clock", barrel.clock());
+        dataFile.set(path + ".sign", barrel.sign());
+        dataFile.set(path + ".items", items);
+    }
+
     @Override
-    public void deleteBarrel(UUID id) {
+    public synchronized void deleteBarrel(UUID id) {
         dataFile.set("barrels." + id, null);
         save();
     }
@@ -128,47 +232,44 @@ public class FlatFileStorage extends DataManager {
     }
 
     @Override
-    public Collection<BCauldron> getAllCauldrons() {
+    public synchronized Collection<BCauldron> getAllCauldrons() {
         ConfigurationSection section = dataFile.getConfigurationSection("cauldrons");
 
         if (section == null) {
             return Collections.emptyList();
         }
 
-        List<BCauldron> cauldrons = new ArrayList<>();
-
-        for (String key : section.getKeys(false)) {
-            BCauldron cauldron = getCauldron(BUtil.uuidFromString(key));
-            if (cauldron != null) {
-                cauldrons.add(cauldron);
-            }
-        }
-        return cauldrons;
+        return deserializeAll(new ArrayList<>(section.getKeys(false)), key -> getCauldron(BUtil.uuidFromString(key)));
     }
 
     @Override
-    public void saveAllCauldrons(Collection<BCauldron> cauldrons, boolean overwrite) {
+    public synchronized void saveAllCauldrons(Collection<SerializableCauldron> cauldrons, boolean overwrite) {
         if (overwrite) {
             dataFile.set("cauldrons", null);
         }
-        for (BCauldron cauldron : cauldrons) {
-            saveCauldron(cauldron);
+        for (SerializableCauldron cauldron : cauldrons) {
+            setCauldron(cauldron);
         }
+        save();
     }
 
     @Override
-    public void saveCauldron(BCauldron cauldron) {
-        String path = "cauldrons." + cauldron.getId();
-
-        dataFile.set(path + ".block", serializeLocation(cauldron.getBlock().getLocation()));
-        dataFile.set(path + ".ingredients", cauldron.getIngredients().serializeIngredients());
-        dataFile.set(path + ".state", cauldron.getState());
+    public synchronized void saveCauldron(BCauldron cauldron) {
+        setCauldron(new SerializableCauldron(cauldron));
         save();
     }
 
+    private void setCauldron(SerializableCauldron cauldron) {
+        String path = "cauldrons." + cauldron.id();
+
+        dataFile.set(path + ".block", cauldron.serializedLocation());
+        dataFile.set(path + ".ingredients", cauldron.serializedIngredients());
+        dataFile.set(path + ".state", cauldron.state());
+    }
+
 
     @Override
-    public void deleteCauldron(UUID id) {
+    public synchronized void deleteCauldron(UUID id) {
         dataFile.set("cauldrons." + id, null);
         save();
     }
@@ -186,46 +287,43 @@ public class FlatFileStorage extends DataManager {
     }
 
     @Override
-    public Collection<BPlayer> getAllPlayers() {
+    public synchronized Collection<BPlayer> getAllPlayers() {
         ConfigurationSection section = dataFile.getConfigurationSection("players");
 
         if (section == null) {
             return Collections.emptyList();
         }
 
-        List<BPlayer> players = new ArrayList<>();
-
-        for (String key : section.getKeys(false)) {
-            BPlayer player = getPlayer(BUtil.uuidFromString(key));
-            if (player != null) {
-                players.add(player);
-            }
-        }
-        return players;
+        return deserializeAll(new ArrayList<>(section.getKeys(false)), key -> getPlayer(BUtil.uuidFromString(key)));
     }
 
     @Override
-    public void saveAllPlayers(Collection<BPlayer> players, boolean overwrite) {
+    public synchronized void saveAllPlayers(Collection<SerializableBPlayer> players, boolean overwrite) {
         if (overwrite) {
             dataFile.set("players", null);
         }
-        for (BPlayer player : players) {
-            savePlayer(player);
+        for (SerializableBPlayer player : players) {
+            setPlayer(player);
         }
+        save();
     }
 
     @Override
-    public void savePlayer(BPlayer player) {
-        String path = "players." + player.getUuid();
-
-        dataFile.set(path + ".quality", player.getQuality());
-        dataFile.set(path + ".drunkenness", player.getDrunkeness());
-        dataFile.set(path + ".offlineDrunkenness", player.getOfflineDrunkeness());
+    public synchronized void savePlayer(BPlayer player) {
+        setPlayer(new SerializableBPlayer(player));
         save();
     }
 
+    private void setPlayer(SerializableBPlayer player) {
+        String path = "players." + player.id();
+
+        dataFile.set(path + ".quality", player.quality());
+        dataFile.set(path + ".drunkenness", player.drunkenness());
+        dataFile.set(path + ".offlineDrunkenness", player.offlineDrunkenness());
+    }
+
     @Override
-    public void deletePlayer(UUID playerUUID) {
+    public synchronized void deletePlayer(UUID playerUUID) {
         dataFile.set("players." + playerUUID, null);
         save();
     }
@@ -238,65 +336,64 @@ public class FlatFileStorage extends DataManager {
     }
 
     @Override
-    public Collection<Wakeup> getAllWakeups() {
+    public synchronized Collection<Wakeup> getAllWakeups() {
         ConfigurationSection section = dataFile.getConfigurationSection("wakeups");
 
         if (section == null) {
             return Collections.emptyList();
         }
 
-        List<Wakeup> wakeups = new ArrayList<>();
-
-        for (String key : section.getKeys(false)) {
-            Wakeup wakeup = getWakeup(BUtil.uuidFromString(key));
-            if (wakeup != null) {
-                wakeups.add(wakeup);
-            }
-        }
-        return wakeups;
+        return deserializeAll(new ArrayList<>(section.getKeys(false)), key -> getWakeup(BUtil.uuidFromString(key)));
     }
 
     @Override
-    public void saveAllWakeups(Collection<Wakeup> wakeups, boolean overwrite) {
+    public synchronized void saveAllWakeups(Collection<SerializableWakeup> wakeups, boolean overwrite) {
         if (overwrite) {
             dataFile.set("wakeups", null);
         }
-        for (Wakeup wakeup : wakeups) {
-            saveWakeup(wakeup);
+        for (SerializableWakeup wakeup : wakeups) {
+            setWakeup(wakeup);
         }
+        save();
     }
 
     @Override
-    public void saveWakeup(Wakeup wakeup) {
-        String path = "wakeups." + wakeup.getId();
-        dataFile.set(path + ".location", serializeLocation(wakeup.getLoc(), true));
+    public synchronized void saveWakeup(Wakeup wakeup) {
+        setWakeup(new SerializableWakeup(wakeup));
         save();
     }
 
+    private void setWakeup(SerializableWakeup wakeup) {
+        String path = "wakeups." + wakeup.id();
+        dataFile.set(path + ".location", wakeup.serializedLocation());
+    }
+
     @Override
-    public void deleteWakeup(UUID id) {
+    public synchronized void deleteWakeup(UUID id) {
         dataFile.set("wakeups." + id, null);
         save();
     }
 
     @Override
-    public BreweryMiscData getBreweryMiscData() {
+    public synchronized BreweryMiscData getBreweryMiscData() {
         return new BreweryMiscData(
                 dataFile.getLong("misc.installTime", System.currentTimeMillis()),
                 dataFile.getLong("misc.mcBarrelTime", 0),
                 dataFile.getLongList("misc.previousSaveSeeds"),
                 dataFile.getIntegerList("misc.brewsCreated"),
-                dataFile.getInt("misc.brewsCreatedHash", 0)
+                dataFile.getInt("misc.brewsCreatedHash", 0),
+                dataFile.getDouble("misc.agingClock", 0)
         );
     }
 
     @Override
-    public void saveBreweryMiscData(BreweryMiscData data) {
+    public synchronized void saveBreweryMiscData(BreweryMiscData data) {
         dataFile.set("misc.installTime", data.installTime());
         dataFile.set("misc.mcBarrelTime", data.mcBarrelTime());
         dataFile.set("misc.previousSaveSeeds", data.prevSaveSeeds());
         dataFile.set("misc.brewsCreated", data.brewsCreated());
         dataFile.set("misc.brewsCreatedHash", data.brewsCreatedHash());
+        dataFile.set("misc.agingClock", data.agingClock());
         save();
     }
 }
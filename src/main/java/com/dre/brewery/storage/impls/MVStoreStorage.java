@@ -0,0 +1,247 @@
+package com.dre.brewery.storage.impls;
+
+import com.dre.brewery.BCauldron;
+import com.dre.brewery.BPlayer;
+import com.dre.brewery.Barrel;
+import com.dre.brewery.Wakeup;
+import com.dre.brewery.storage.DataManager;
+import com.dre.brewery.storage.StorageInitException;
+import com.dre.brewery.storage.records.BarrelSnapshot;
+import com.dre.brewery.storage.records.BreweryMiscData;
+import com.dre.brewery.storage.records.ConfiguredDataManager;
+import com.dre.brewery.storage.records.SerializableBPlayer;
+import com.dre.brewery.storage.records.SerializableCauldron;
+import com.dre.brewery.storage.records.SerializableWakeup;
+import com.dre.brewery.storage.serialization.BinaryRecordCodec;
+import com.dre.brewery.storage.serialization.BinaryRecordCodec.Encoded;
+import org.bukkit.inventory.ItemStack;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Embedded key-value storage in a single file, using the MVStore of H2.
+ * <p>Every record type has its own map from id to the record in the binary format, so nothing is converted to text.
+ * MVStore is copy-on-write: reads never wait for writes, and a save becomes visible and durable as one version
+ * when it is committed in {@link #flush()}. Only changed pages are written, so a save of changes writes only the changed records.
+ */
+public class MVStoreStorage extends DataManager {
+
+    private static final String MISC_KEY = "misc";
+
+    private final MVStore store;
+    private final BinaryRecordCodec codec = new BinaryRecordCodec();
+    private final MVMap<String, byte[]> misc;
+    private final MVMap<String, byte[]> barrels;
+    private final MVMap<String, byte[]> cauldrons;
+    private final MVMap<String, byte[]> players;
+    private final MVMap<String, byte[]> wakeups;
+
+    public MVStoreStorage(ConfiguredDataManager record) throws StorageInitException {
+        String fileName = record.database() + ".mv.db";
+        File rawFile = new File(plugin.getDataFolder(), fileName);
+
+        try {
+            // Changes are also committed in the background about every second, which keeps the file compact
+            this.store = new MVStore.Builder()
+                    .fileName(rawFile.getAbsolutePath())
+                    .compress()
+                    .open();
+        } catch (RuntimeException e) {
+            throw new StorageInitException("Failed to open MVStore file! " + fileName, e);
+        }
+
+        String prefix = record.tablePrefix() != null ? record.tablePrefix() : "";
+        this.misc = store.openMap(prefix + "misc");
+        this.barrels = store.openMap(prefix + "barrels");
+        this.cauldrons = store.openMap(prefix + "cauldrons");
+        this.players = store.openMap(prefix + "players");
+        this.wakeups = store.openMap(prefix + "wakeups");
+    }
+
+    @Override
+    protected void flush() {
+        store.commit();
+        store.sync();
+    }
+
+    @Override
+    protected void closeConnection() {
+        try {
+            store.close();
+        } catch (RuntimeException e) {
+            plugin.errorLog("Failed to close MVStore file!", e);
+        }
+    }
+
+    @Override
+    public String getStats() {
+        return "MVStore version " + store.getCurrentVersion() + ": " + barrels.size() + " barrels, " + cauldrons.size() + " cauldrons, "
+                + players.size() + " players, " + wakeups.size() + " wakeups";
+    }
+
+    private <T> T getGeneric(UUID id, MVMap<String, byte[]> map, Function<byte[], T> deserializer) {
+        byte[] data = map.get(id.toString());
+        return data != null ? deserializer.apply(data) : null;
+    }
+
+    private <T> List<T> getAllGeneric(MVMap<String, byte[]> map, Function<byte[], T> deserializer) {
+        // Reads from the current version, saving at the same time does not change what is read
+        return deserializeAll(new ArrayList<>(map.values()), deserializer);
+    }
+
+    private void saveAllGeneric(List<Encoded> records, MVMap<String, byte[]> map, boolean overwrite) {
+        Set<String> saved = new HashSet<>();
+        for (Encoded record : records) {
+            map.put(record.id(), record.data());
+            saved.add(record.id());
+        }
+        if (overwrite) {
+            // Remove what was not saved instead of clearing first, the map is never empty in between
+            List<String> stale = new ArrayList<>();
+            for (String id : map.keySet()) {
+                if (!saved.contains(id)) {
+                    stale.add(id);
+                }
+            }
+            stale.forEach(map::remove);
+        }
+    }
+
+    private void saveGeneric(Encoded record, MVMap<String, byte[]> map) {
+        map.put(record.id(), record.data());
+        store.commit();
+    }
+
+    private void deleteGeneric(UUID id, MVMap<String, byte[]> map) {
+        map.remove(id.toString());
+    }
+
+    @Override
+    public Barrel getBarrel(UUID id) {
+        BarrelSnapshot barrel = getGeneric(id, barrels, codec::decodeBarrelSnapshot);
+        return barrel != null ? barrel.toBarrel() : null;
+    }
+
+    @Override
+    public Collection<BarrelSnapshot> getAllBarrelSnapshots(boolean withContents) {
+        return getAllGeneric(barrels, data -> codec.decodeBarrelSnapshot(data, withContents));
+    }
+
+    @Override
+    public ItemStack[] getBarrelContents(UUID id) {
+        return getGeneric(id, barrels, codec::decodeBarrelContents);
+    }
+
+    @Override
+    public void saveAllBarrels(Collection<BarrelSnapshot> barrels, boolean overwrite) {
+        saveAllGeneric(barrels.stream().map(codec::encodeRecord).toList(), this.barrels, overwrite);
+    }
+
+    @Override
+    public void saveBarrel(Barrel barrel) {
+        saveGeneric(codec.encodeRecord(BarrelSnapshot.of(barrel)), barrels);
+    }
+
+    @Override
+    public void deleteBarrel(UUID id) {
+        deleteGeneric(id, barrels);
+    }
+
+    @Override
+    public BCauldron getCauldron(UUID id) {
+        return getGeneric(id, cauldrons, data -> codec.decodeCauldron(data).toCauldron());
+    }
+
+    @Override
+    public Collection<BCauldron> getAllCauldrons() {
+        return getAllGeneric(cauldrons, data -> codec.decodeCauldron(data).toCauldron());
+    }
+
+    @Override
+    public void saveAllCauldrons(Collection<SerializableCauldron> cauldrons, boolean overwrite) {
+        saveAllGeneric(cauldrons.stream().map(codec::encodeRecord).toList(), this.cauldrons, overwrite);
+    }
+
+    @Override
+    public void saveCauldron(BCauldron cauldron) {
+        saveGeneric(codec.encodeRecord(new SerializableCauldron(cauldron)), cauldrons);
+    }
+
+    @Override
+    public void deleteCauldron(UUID id) {
+        deleteGeneric(id, cauldrons);
+    }
+
+    @Override
+    public BPlayer getPlayer(UUID playerUUID) {
+        return getGeneric(playerUUID, players, data -> codec.decodePlayer(data).toBPlayer());
+    }
+
+    @Override
+    public Collection<BPlayer> getAllPlayers() {
+        return getAllGeneric(players, data -> codec.decodePlayer(data).toBPlayer());
+    }
+
+    @Override
+    public void saveAllPlayers(Collection<SerializableBPlayer> players, boolean overwrite) {
+        saveAllGeneric(players.stream().map(codec::encodeRecord).toList(), this.players, overwrite);
+    }
+
+    @Override
+    public void savePlayer(BPlayer player) {
+        saveGeneric(codec.encodeRecord(new SerializableBPlayer(player)), players);
+    }
+
+    @Override
+    public void deletePlayer(UUID playerUUID) {
+        deleteGeneric(playerUUID, players);
+    }
+
+    @Override
+    public Wakeup getWakeup(UUID id) {
+        return getGeneric(id, wakeups, data -> codec.decodeWakeup(data).toWakeup());
+    }
+
+    @Override
+    public Collection<Wakeup> getAllWakeups() {
+        return getAllGeneric(wakeups, data -> codec.decodeWakeup(data).toWakeup());
+    }
+
+    @Override
+    public void saveAllWakeups(Collection<SerializableWakeup> wakeups, boolean overwrite) {
+        saveAllGeneric(wakeups.stream().map(codec::encodeRecord).toList(), this.wakeups, overwrite);
+    }
+
+    @Override
+    public void saveWakeup(Wakeup wakeup) {
+        saveGeneric(codec.encodeRecord(new SerializableWakeup(wakeup)), wakeups);
+    }
+
+    @Override
+    public void deleteWakeup(UUID id) {
+        deleteGeneric(id, wakeups);
+    }
+
+    @Override
+    public BreweryMiscData getBreweryMiscData() {
+        byte[] data = misc.get(MISC_KEY);
+        if (data != null) {
+            return codec.decodeMisc(data);
+        }
+        return new BreweryMiscData(System.currentTimeMillis(), 0, new ArrayList<>(), new ArrayList<>(), 0, 0);
+    }
+
+    @Override
+    public void saveBreweryMiscData(BreweryMiscData data) {
+        misc.put(MISC_KEY, codec.encode(data));
+    }
+}
@@ -4,26 +4,38 @@ import com.dre.brewery.BCauldron;
 import com.dre.brewery.BPlayer;
 import com.dre.brewery.Barrel;
 import com.dre.brewery.Wakeup;
+import com.dre.brewery.storage.ConnectionPool;
+import com.dre.brewery.storage.ConnectionPool.PooledConnection;
 import com.dre.brewery.storage.DataManager;
+import com.dre.brewery.storage.impls.NormalizedSchema.Row;
 import com.dre.brewery.storage.records.SerializableBPlayer;
 import com.dre.brewery.storage.records.SerializableBarrel;
 import com.dre.brewery.storage.records.SerializableCauldron;
 import com.dre.brewery.storage.records.SerializableThing;
 import com.dre.brewery.storage.records.SerializableWakeup;
+import com.dre.brewery.storage.serialization.BinaryRecordCodec;
 import com.dre.brewery.storage.serialization.SQLDataSerializer;
 import com.dre.brewery.storage.StorageInitException;
+import com.dre.brewery.storage.StorageWriteException;
+import com.dre.brewery.storage.records.BarrelSnapshot;
 import com.dre.brewery.storage.records.BreweryMiscData;
 import com.dre.brewery.storage.records.ConfiguredDataManager;
 
+import org.bukkit.inventory.ItemStack;
+
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.UUID;
+import java.util.function.Function;
 
 // I don't write the greatest SQL, but I did my best ¯\_(ツ)_/¯ - Jsinco
 @SuppressWarnings("Duplicates") // Dupe code from SQLiteStorage
@@ -32,56 +44,131 @@ public class MySQLStorage extends DataManager {
     private static final String URL = "jdbc:mysql://";
     private static final String[] TABLES = {
             "misc (id VARCHAR(4) PRIMARY KEY, data LONGTEXT);",
-            "barrels (id VARCHAR(36) PRIMARY KEY, data LONGTEXT);",
-            "cauldrons (id VARCHAR(36) PRIMARY KEY, data LONGTEXT);",
-            "players (id VARCHAR(36) PRIMARY KEY, data LONGTEXT);",
-            "wakeups (id VARCHAR(36) PRIMARY KEY, data LONGTEXT);"
+            "barrels (id VARCHAR(36) PRIMARY KEY, data MEDIUMBLOB);",
+            "cauldrons (id VARCHAR(36) PRIMARY KEY, data MEDIUMBLOB);",
+            "players (id VARCHAR(36) PRIMARY KEY, data MEDIUMBLOB);",
+            "wakeups (id VARCHAR(36) PRIMARY KEY, data MEDIUMBLOB);"
     };
-
-    private final Connection connection;
+    // Tables of records that can be stored in the binary format, with the type of their records in the old format
+    private static final Map<String, Class<? extends SerializableThing>> RECORD_TABLES = Map.of(
+            "barrels", SerializableBarrel.class,
+            "cauldrons", SerializableCauldron.class,
+            "players", SerializableBPlayer.class,
+            "wakeups", SerializableWakeup.class
+    );
+
+    private final ConnectionPool pool;
     private final String tablePrefix;
     private final SQLDataSerializer serializer;
+    private final BinaryRecordCodec codec;
+    private volatile boolean binary; // Tables have BLOB columns, so records can be saved in the binary format
+    private final boolean normalized; // Also save the queryable columns of NormalizedSchema
 
     public MySQLStorage(ConfiguredDataManager record) throws StorageInitException {
-        try {
-            this.connection = DriverManager.getConnection(URL + record.address(), record.username(), record.password());
-            this.tablePrefix = record.tablePrefix();
-            this.serializer = new SQLDataSerializer();
-        } catch (SQLException e) {
-            throw new StorageInitException("Failed to connect to MySQL database! (Did you configure it correctly?)", e);
-        }
-
-        try {
-            try (PreparedStatement statement = connection.prepareStatement("USE " + record.database())) {
-                statement.execute();
+        this.tablePrefix = record.tablePrefix();
+        this.serializer = new SQLDataSerializer();
+        this.codec = serializer.getCodec();
+        this.normalized = record.normalizedSchema();
+
+        Properties properties = new Properties();
+        properties.setProperty("user", record.username());
+        properties.setProperty("password", record.password());
+        properties.setProperty("connectTimeout", String.valueOf(record.connectionTimeout()));
+        String url = URL + record.address();
+        String use = "USE " + record.database();
+        this.pool = new ConnectionPool(() -> {
+            Connection connection = DriverManager.getConnection(url, properties);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(use);
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
             }
+            return connection;
+        }, record.poolSize(), record.connectionTimeout(), record.maxLifetime());
 
+        try (PooledConnection connection = pool.getConnection()) {
             for (String table : TABLES) {
-                try (PreparedStatement statement = connection.prepareStatement("CREATE TABLE IF NOT EXISTS " + tablePrefix + table)) {
+                try (PreparedStatement statement = connection.getConnection().prepareStatement("CREATE TABLE IF NOT EXISTS " + tablePrefix + table)) {
                     statement.execute();
+                } catch (SQLException e) {
+                    pool.close();
+                    throw new StorageInitException("Failed to create tables!", e);
                 }
             }
+            binary = hasBinaryColumns(connection.getConnection());
+            if (normalized) {
+                NormalizedSchema.createColumns(connection.getConnection(), tablePrefix);
+            }
         } catch (SQLException e) {
-            throw new StorageInitException("Failed to create tables!", e);
+            pool.close();
+            throw new StorageInitException("Failed to connect to MySQL database! (Did you configure it correctly?)", e);
+        }
+        if (!binary) {
+            plugin.log("MySQL data is stored in the old format, use '/brew migratedata' to convert it to the smaller binary format");
         }
     }
 
+    private boolean hasBinaryColumns(Connection connection) throws SQLException {
+        for (String table : RECORD_TABLES.keySet()) {
+            if (!isBinaryColumn(connection, tablePrefix + table)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBinaryColumn(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT data FROM " + table + " WHERE 1 = 0")) {
+            String type = resultSet.getMetaData().getColumnTypeName(1);
+            return type != null && type.toUpperCase().contains("BLOB");
+        }
+    }
+
+    private void setData(PreparedStatement statement, int index, SerializableThing serializableThing) throws SQLException {
+        if (binary || serializableThing instanceof BinaryRecordCodec.Encoded) {
+            statement.setBytes(index, codec.encode(serializableThing));
+        } else {
+            statement.setString(index, serializer.serialize(serializableThing));
+        }
+    }
+
+    private void setRow(PreparedStatement statement, Row row) throws SQLException {
+        statement.setString(1, row.record().getId());
+        setData(statement, 2, row.record());
+        if (normalized && row.columns() != null) {
+            NormalizedSchema.setColumns(statement, 3, row.columns());
+        }
+    }
+
+    private String upsertSql(String into, String table) {
+        if (!normalized) {
+            return "INSERT INTO " + into + " (id, data) VALUES (?, ?) ON DUPLICATE KEY UPDATE data = VALUES(data)";
+        }
+        return "INSERT INTO " + into + " (id, data" + NormalizedSchema.columnNames(table) + ") VALUES (?, ?" + NormalizedSchema.placeholders(table)
+                + ") ON DUPLICATE KEY UPDATE data = VALUES(data)" + NormalizedSchema.updates(table, "VALUES(%s)");
+    }
+
     @Override
     protected void closeConnection() {
-        try {
-            connection.close();
-        } catch (SQLException e) {
-            plugin.errorLog("Failed to close MySQL connection!", e);
-        }
+        plugin.debugLog(pool.getStats());
+        pool.close();
     }
 
-    private <T> T getGeneric(UUID id, String table, Class<T> type) {
+    @Override
+    public String getStats() {
+        return pool.getStats();
+    }
+
+    private <T> T getGeneric(UUID id, String table, Function<byte[], T> deserializer) {
         String sql = "SELECT data FROM " + tablePrefix + table + " WHERE id = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (PooledConnection connection = pool.getConnection()) {
+            PreparedStatement statement = connection.prepare(sql);
             statement.setString(1, id.toString());
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
-                    return serializer.deserialize(resultSet.getString("data"), type);
+                    return deserializer.apply(resultSet.getBytes("data"));
                 }
             }
         } catch (SQLException e) {
@@ -90,84 +177,83 @@ public class MySQLStorage extends DataManager {
         return null;
     }
 
-    private <T extends SerializableThing> List<T> getAllGeneric(String table, Class<T> type) {
+    private <T> List<T> getAllGeneric(String table, Function<byte[], T> deserializer) {
         String sql = "SELECT id, data FROM " + tablePrefix + table;
-        List<T> objects = new ArrayList<>();
+        List<byte[]> rows = new ArrayList<>();
 
-        try (PreparedStatement statement = connection.prepareStatement(sql);
-             ResultSet resultSet = statement.executeQuery()) {
+        try (PooledConnection connection = pool.getConnection();
+             ResultSet resultSet = connection.prepare(sql).executeQuery()) {
 
             while (resultSet.next()) {
-                String data = resultSet.getString("data");
-                objects.add(serializer.deserialize(data, type));
+                rows.add(resultSet.getBytes("data"));
             }
         } catch (SQLException e) {
             plugin.errorLog("Failed to retrieve objects from table: " + table + ", from: MySQL!", e);
         }
-        return objects;
+        // Deserialize after the connection is released, that is the slow part
+        return deserializeAll(rows, deserializer);
     }
 
 
-	private void saveAllGeneric(List<? extends SerializableThing> serializableThings, String table, boolean overwrite) {
+	private void saveAllGeneric(List<Row> rows, String table, boolean overwrite) {
 		if (!overwrite) {
-			String insertSql = "INSERT INTO " + tablePrefix + table + " (id, data) VALUES (?, ?) ON DUPLICATE KEY UPDATE data = VALUES(data)";
-			try (PreparedStatement insertStatement = connection.prepareStatement(insertSql)) {
-				for (SerializableThing serializableThing : serializableThings) {
-					insertStatement.setString(1, serializableThing.getId());
-					insertStatement.setString(2, serializer.serialize(serializableThing));
+			String insertSql = upsertSql(tablePrefix + table, table);
+			try (PooledConnection connection = pool.getConnection()) {
+				PreparedStatement insertStatement = connection.prepare(insertSql);
+				for (Row row : rows) {
+					setRow(insertStatement, row);
 					insertStatement.addBatch();
 				}
 				insertStatement.executeBatch();
 			} catch (SQLException e) {
-				plugin.errorLog("Failed to save to MySQL!", e);
+				throw new StorageWriteException("Failed to save to MySQL!", e);
 			}
 			return;
 		}
 
-		String createTempTableSql = "CREATE TEMPORARY TABLE temp_" + table + " (id VARCHAR(36), data LONGTEXT, PRIMARY KEY (id))";
-		String insertTempTableSql = "INSERT INTO temp_" + table + " (id, data) VALUES (?, ?) ON DUPLICATE KEY UPDATE data = VALUES(data)";
-		String replaceTableSql = "REPLACE INTO " + tablePrefix + table + " SELECT * FROM temp_" + table;
+		String createTempTableSql = "CREATE TEMPORARY TABLE temp_" + table + " LIKE " + tablePrefix + table;
+		String insertTempTableSql = upsertSql("temp_" + table, table);
+		// Not REPLACE, columns that are kept if unknown would be lost
+		String replaceTableSql = "INSERT INTO " + tablePrefix + table + " SELECT * FROM temp_" + table + " ON DUPLICATE KEY UPDATE data = VALUES(data)"
+				+ (normalized ? NormalizedSchema.updates(table, "VALUES(%s)") : "");
 		String dropTempTableSql = "DROP TEMPORARY TABLE temp_" + table;
 
-		try {
+		try (PooledConnection pooled = pool.getConnection()) {
+			Connection connection = pooled.getConnection();
 			connection.setAutoCommit(false);
 
-			try (PreparedStatement createTempTableStmt = connection.prepareStatement(createTempTableSql);
-				 PreparedStatement insertTempTableStmt = connection.prepareStatement(insertTempTableSql)) {
-
-				createTempTableStmt.execute();
+			try {
+				pooled.prepare(createTempTableSql).execute();
 
-				for (SerializableThing serializableThing : serializableThings) {
-					insertTempTableStmt.setString(1, serializableThing.getId());
-					insertTempTableStmt.setString(2, serializer.serialize(serializableThing));
+				PreparedStatement insertTempTableStmt = pooled.prepare(insertTempTableSql);
+				for (Row row : rows) {
+					setRow(insertTempTableStmt, row);
 					insertTempTableStmt.addBatch();
 				}
 				insertTempTableStmt.executeBatch();
 
-				try (PreparedStatement replaceTableStmt = connection.prepareStatement(replaceTableSql);
-					 PreparedStatement dropTempTableStmt = connection.prepareStatement(dropTempTableSql)) {
-
-					replaceTableStmt.execute();
-					dropTempTableStmt.execute();
-				}
+				pooled.prepare(replaceTableSql).execute();
+				pooled.prepare(dropTempTableSql).execute();
 
 				connection.commit();
 			} catch (SQLException e) {
+				// The temporary table may still exist on this connection, don't reuse it
+				pooled.markBroken();
 				connection.rollback();
-				plugin.errorLog("Failed to save objects to: " + table + " due to MySQL exception!", e);
+				throw new StorageWriteException("Failed to save objects to: " + table + " due to MySQL exception!", e);
 			} finally {
 				connection.setAutoCommit(true);
 			}
 		} catch (SQLException e) {
-			plugin.errorLog("Failed to manage transaction for saving objects to: " + table + " due to MySQL exception!", e);
+			throw new StorageWriteException("Failed to manage transaction for saving objects to: " + table + " due to MySQL exception!", e);
 		}
 	}
 
-    private <T extends SerializableThing> void saveGeneric(T serializableThing, String table) {
-        String sql = "INSERT INTO " + tablePrefix + table + " (id, data) VALUES (?, ?) ON DUPLICATE KEY UPDATE data = VALUES(data)";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, serializableThing.getId());
-            statement.setString(2, serializer.serialize(serializableThing));
+    private void saveGeneric(Row row, String table) {
+        String sql = upsertSql(tablePrefix + table, table);
+        try (PooledConnection connection = pool.getConnection()) {
+            PreparedStatement statement = connection.prepare(sql);
+            setRow(statement, row);
             statement.execute();
         } catch (SQLException e) {
             plugin.errorLog("Failed to save object to:" + table + ", to: MySQL!", e);
@@ -176,7 +262,8 @@ public class MySQLStorage extends DataManager {
 
     private void deleteGeneric(UUID id, String table) {
         String sql = "DELETE FROM " + tablePrefix + table + " WHERE id = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (PooledConnection connection = pool.getConnection()) {
+            PreparedStatement statement = connection.prepare(sql);
             statement.setString(1, id.toString());
             statement.execute();
         } catch (SQLException e) {
@@ -186,31 +273,33 @@ public class MySQLStorage extends DataManager {
 
     @Override
     public Barrel getBarrel(UUID id) {
-        SerializableBarrel serializableBarrel = getGeneric(id, "barrels", SerializableBarrel.class);
-        if (serializableBarrel != null) {
-            return serializableBarrel.toBarrel();
-        }
-        return null;
+        BarrelSnapshot barrel = getGeneric(id, "barrels", data -> serializer.deserializeBarrel(data, true));
+        return barrel != null ? barrel.toBarrel() : null;
     }
 
     @Override
-    public Collection<Barrel> getAllBarrels() {
-        return getAllGeneric("barrels", SerializableBarrel.class).stream()
-                .map(SerializableBarrel::toBarrel)
-                .toList();
+    public Collection<BarrelSnapshot> getAllBarrelSnapshots(boolean withContents) {
+        return getAllGeneric("barrels", data -> serializer.deserializeBarrel(data, withContents));
     }
 
     @Override
-    public void saveAllBarrels(Collection<Barrel> barrels, boolean overwrite) {
-        List<SerializableBarrel> serializableBarrels = barrels.stream()
-                .map(SerializableBarrel::new)
-                .toList();
-        saveAllGeneric(serializableBarrels, "barrels", overwrite);
+    public ItemStack[] getBarrelContents(UUID id) {
+        return getGeneric(id, "barrels", serializer::deserializeBarrelContents);
+    }
+
+    @Override
+    public void saveAllBarrels(Collection<BarrelSnapshot> barrels, boolean overwrite) {
+        // Encode the items right away, instead of to Base64 and back
+        saveAllGeneric(barrels.stream().map(this::barrelRow).toList(), "barrels", overwrite);
     }
 
     @Override
     public void saveBarrel(Barrel barrel) {
-        saveGeneric(new SerializableBarrel(barrel), "barrels");
+        saveGeneric(barrelRow(BarrelSnapshot.of(barrel)), "barrels");
+    }
+
+    private Row barrelRow(BarrelSnapshot barrel) {
+        return new Row(binary ? codec.encodeRecord(barrel) : new SerializableBarrel(barrel), normalized ? NormalizedSchema.barrelColumns(barrel) : null);
     }
 
     @Override
@@ -220,31 +309,26 @@ public class MySQLStorage extends DataManager {
 
     @Override
     public BCauldron getCauldron(UUID id) {
-        SerializableCauldron serializableCauldron = getGeneric(id, "cauldrons", SerializableCauldron.class);
-        if (serializableCauldron != null) {
-            return serializableCauldron.toCauldron();
-        }
-        return null;
+        return getGeneric(id, "cauldrons", serializer::deserializeCauldron);
     }
 
     @Override
     public Collection<BCauldron> getAllCauldrons() {
-        return getAllGeneric("cauldrons", SerializableCauldron.class).stream()
-                .map(SerializableCauldron::toCauldron)
-                .toList();
+        return getAllGeneric("cauldrons", serializer::deserializeCauldron);
     }
 
     @Override
-    public void saveAllCauldrons(Collection<BCauldron> cauldrons, boolean overwrite) {
-        List<SerializableCauldron> serializableCauldrons = cauldrons.stream()
-                .map(SerializableCauldron::new)
-                .toList();
-        saveAllGeneric(serializableCauldrons, "cauldrons", overwrite);
+    public void saveAllCauldrons(Collection<SerializableCauldron> cauldrons, boolean overwrite) {
+        saveAllGeneric(cauldrons.stream().map(this::cauldronRow).toList(), "cauldrons", overwrite);
     }
 
     @Override
     public void saveCauldron(BCauldron cauldron) {
-        saveGeneric(new SerializableCauldron(cauldron), "cauldrons");
+        saveGeneric(cauldronRow(new SerializableCauldron(cauldron)), "cauldrons");
+    }
+
+    private Row cauldronRow(SerializableCauldron cauldron) {
+        return new Row(cauldron, normalized ? NormalizedSchema.cauldronColumns(cauldron) : null);
     }
 
     @Override
@@ -254,31 +338,26 @@ public class MySQLStorage extends DataManager {
 
     @Override
     public BPlayer getPlayer(UUID playerUUID) {
-        SerializableBPlayer serializableBPlayer = getGeneric(playerUUID, "players", SerializableBPlayer.class);
-        if (serializableBPlayer != null) {
-            return serializableBPlayer.toBPlayer();
-        }
-        return null;
+        return getGeneric(playerUUID, "players", serializer::deserializePlayer);
     }
 
     @Override
     public Collection<BPlayer> getAllPlayers() {
-        return getAllGeneric("players", SerializableBPlayer.class).stream()
-                .map(SerializableBPlayer::toBPlayer)
-                .toList();
+        return getAllGeneric("players", serializer::deserializePlayer);
     }
 
     @Override
-    public void saveAllPlayers(Collection<BPlayer> players, boolean overwrite) {
-        List<SerializableBPlayer> serializableBPlayers = players.stream()
-                .map(SerializableBPlayer::new)
-                .toList();
-        saveAllGeneric(serializableBPlayers, "players", overwrite);
+    public void saveAllPlayers(Collection<SerializableBPlayer> players, boolean overwrite) {
+        saveAllGeneric(players.stream().map(this::playerRow).toList(), "players", overwrite);
     }
 
     @Override
     public void savePlayer(BPlayer player) {
-        saveGeneric(new SerializableBPlayer(player), "players");
+        saveGeneric(playerRow(new SerializableBPlayer(player)), "players");
+    }
+
+    private Row playerRow(SerializableBPlayer player) {
+        return new Row(player, normalized ? NormalizedSchema.playerColumns(player) : null);
     }
 
     @Override
@@ -288,31 +367,22 @@ public class MySQLStorage extends DataManager {
 
     @Override
     public Wakeup getWakeup(UUID id) {
-        SerializableWakeup serializableWakeup = getGeneric(id, "wakeups", SerializableWakeup.class);
-        if (serializableWakeup != null) {
-            return serializableWakeup.toWakeup();
-        }
-        return null;
+        return getGeneric(id, "wakeups", serializer::deserializeWakeup);
     }
 
     @Override
     public Collection<Wakeup> getAllWakeups() {
-        return getAllGeneric("wakeups", SerializableWakeup.class).stream()
-                .map(SerializableWakeup::toWakeup)
-                .toList();
+        return getAllGeneric("wakeups", serializer::deserializeWakeup);
     }
 
     @Override
-    public void saveAllWakeups(Collection<Wakeup> wakeups, boolean overwrite) {
-        List<SerializableWakeup> serializableWakeups = wakeups.stream()
-                .map(SerializableWakeup::new)
-                .toList();
-        saveAllGeneric(serializableWakeups, "wakeups", overwrite);
+    public void saveAllWakeups(Collection<SerializableWakeup> wakeups, boolean overwrite) {
+        saveAllGeneric(wakeups.stream().map(wakeup -> new Row(wakeup, null)).toList(), "wakeups", overwrite);
     }
 
     @Override
     public void saveWakeup(Wakeup wakeup) {
-        saveGeneric(new SerializableWakeup(wakeup), "wakeups");
+        saveGeneric(new Row(new SerializableWakeup(wakeup), null), "wakeups");
     }
 
     @Override
@@ -323,25 +393,80 @@ public class MySQLStorage extends DataManager {
     @Override
     public BreweryMiscData getBreweryMiscData() {
         String sql = "SELECT CASE WHEN EXISTS (SELECT 1 FROM " + tablePrefix + "misc WHERE id = 'misc') THEN (SELECT data FROM " + tablePrefix + "misc WHERE id = 'misc') ELSE NULL END AS data";
-        try (PreparedStatement statement = connection.prepareStatement(sql);
-             ResultSet resultSet = statement.executeQuery()) {
+        try (PooledConnection connection = pool.getConnection();
+             ResultSet resultSet = connection.prepare(sql).executeQuery()) {
             if (resultSet.next() && resultSet.getString("data") != null) {
                 return serializer.deserialize(resultSet.getString("data"), BreweryMiscData.class);
             }
         } catch (SQLException e) {
             plugin.errorLog("Failed to retrieve misc data from MySQL!", e);
         }
-        return new BreweryMiscData(System.currentTimeMillis(), 0, new ArrayList<>(), new ArrayList<>(), 0);
+        return new BreweryMiscData(System.currentTimeMillis(), 0, new ArrayList<>(), new ArrayList<>(), 0, 0);
     }
 
     @Override
     public void saveBreweryMiscData(BreweryMiscData data) {
         String sql = "INSERT INTO " + tablePrefix + "misc (id, data) VALUES ('misc', ?) ON DUPLICATE KEY UPDATE data = VALUES(data)";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (PooledConnection connection = pool.getConnection()) {
+            PreparedStatement statement = connection.prepare(sql);
             statement.setString(1, serializer.serialize(data));
             statement.execute();
         } catch (SQLException e) {
             plugin.errorLog("Failed to save misc data to MySQL!", e);
         }
     }
+
+    @Override
+    public boolean hasRecordFormatMigration() {
+        return true;
+    }
+
+    @Override
+    public int migrateRecordFormat() {
+        int converted = 0;
+        try (PooledConnection pooled = pool.getConnection()) {
+            Connection connection = pooled.getConnection();
+            for (String table : RECORD_TABLES.keySet()) {
+                if (!isBinaryColumn(connection, tablePrefix + table)) {
+                    // MySQL keeps the bytes of the old text, which can still be read
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("ALTER TABLE " + tablePrefix + table + " MODIFY data MEDIUMBLOB");
+                    }
+                }
+            }
+            binary = true;
+
+            for (Map.Entry<String, Class<? extends SerializableThing>> entry : RECORD_TABLES.entrySet()) {
+                converted += convertRecords(pooled, entry.getKey(), entry.getValue());
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to migrate MySQL data to the binary format!", e);
+        }
+        return converted;
+    }
+
+    private int convertRecords(PooledConnection connection, String table, Class<? extends SerializableThing> type) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        List<byte[]> oldData = new ArrayList<>();
+        try (ResultSet resultSet = connection.prepare("SELECT id, data FROM " + tablePrefix + table).executeQuery()) {
+            while (resultSet.next()) {
+                byte[] data = resultSet.getBytes("data");
+                if (!BinaryRecordCodec.isBinary(data)) {
+                    ids.add(resultSet.getString("id"));
+                    oldData.add(data);
+                }
+            }
+        }
+
+        // Only replace records that were not saved again in the meantime
+        PreparedStatement statement = connection.prepare("UPDATE " + tablePrefix + table + " SET data = ? WHERE id = ? AND data = ?");
+        for (int i = 0; i < ids.size(); i++) {
+            statement.setBytes(1, serializer.toBinary(oldData.get(i), type));
+            statement.setString(2, ids.get(i));
+            statement.setBytes(3, oldData.get(i));
+            statement.addBatch();
+        }
+        statement.executeBatch();
+        return ids.size();
+    }
 }
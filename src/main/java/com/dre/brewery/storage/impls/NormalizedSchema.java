@@ -0,0 +1,191 @@
+package com.dre.brewery.storage.impls;
+
+import com.dre.brewery.storage.records.BarrelSnapshot;
+import com.dre.brewery.storage.records.SerializableBPlayer;
+import com.dre.brewery.storage.records.SerializableCauldron;
+import com.dre.brewery.storage.records.SerializableThing;
+import org.bukkit.Location;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Optional queryable columns, saved next to the data of the records in the SQL databases.
+ * <p>The data column is still what is loaded, these columns make it possible to query by world and chunk,
+ * or to look at the data from outside without deserializing every row.
+ */
+final class NormalizedSchema {
+
+    /**
+     * @param name The name of the column
+     * @param type The SQL type of the column
+     * @param keepIfNull Keep the stored value when saving null, for values that are not always known when saving
+     */
+    record Column(String name, String type, boolean keepIfNull) {
+        Column(String name, String type) {
+            this(name, type, false);
+        }
+    }
+
+    /**
+     * A record to save, with the values of the queryable columns of its table
+     * @param record The record to save in the data column
+     * @param columns The values of the columns, null if the normalized schema is not used
+     */
+    record Row(SerializableThing record, Object[] columns) {
+    }
+
+    private static final List<Column> LOCATION_COLUMNS = List.of(
+            new Column("world", "VARCHAR(36)"),
+            new Column("chunk_x", "INT"),
+            new Column("chunk_z", "INT"),
+            new Column("x", "INT"),
+            new Column("y", "INT"),
+            new Column("z", "INT")
+    );
+
+    private static final Map<String, List<Column>> COLUMNS = Map.of(
+            "barrels", concat(LOCATION_COLUMNS, new Column("time", "FLOAT"), new Column("wood", "TINYINT", true)),
+            "cauldrons", concat(LOCATION_COLUMNS, new Column("state", "INT")),
+            "players", List.of(new Column("quality", "INT"), new Column("drunkenness", "INT"), new Column("offline_drunkenness", "INT"))
+    );
+
+    // Tables indexed by world and chunk
+    private static final List<String> CHUNK_INDEXED = List.of("barrels", "cauldrons");
+
+    private NormalizedSchema() {
+    }
+
+    private static List<Column> concat(List<Column> first, Column... more) {
+        Column[] all = first.toArray(new Column[first.size() + more.length]);
+        System.arraycopy(more, 0, all, first.size(), more.length);
+        return List.of(all);
+    }
+
+    static List<Column> columns(String table) {
+        return COLUMNS.getOrDefault(table, List.of());
+    }
+
+    /**
+     * Add the columns and indexes that are missing in the tables
+     */
+    static void createColumns(Connection connection, String tablePrefix) throws SQLException {
+        for (Map.Entry<String, List<Column>> entry : COLUMNS.entrySet()) {
+            String table = tablePrefix + entry.getKey();
+            Set<String> existing = new HashSet<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+                ResultSetMetaData meta = resultSet.getMetaData();
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    existing.add(meta.getColumnName(i).toLowerCase());
+                }
+            }
+
+            for (Column column : entry.getValue()) {
+                if (!existing.contains(column.name())) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("ALTER TABLE " + table + " ADD COLUMN " + column.name() + " " + column.type());
+                    }
+                }
+            }
+        }
+
+        for (String name : CHUNK_INDEXED) {
+            String table = tablePrefix + name;
+            String index = table + "_chunk";
+            if (!hasIndex(connection, table, index)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE INDEX " + index + " ON " + table + " (world, chunk_x, chunk_z)");
+                }
+            }
+        }
+    }
+
+    private static boolean hasIndex(Connection connection, String table, String index) throws SQLException {
+        try (ResultSet resultSet = connection.getMetaData().getIndexInfo(connection.getCatalog(), null, table, false, true)) {
+            while (resultSet.next()) {
+                if (index.equalsIgnoreCase(resultSet.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The columns to insert after id and data, like ", world, chunk_x"
+     */
+    static String columnNames(String table) {
+        StringBuilder builder = new StringBuilder();
+        for (Column column : columns(table)) {
+            builder.append(", ").append(column.name());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return A placeholder for each column, like ", ?, ?"
+     */
+    static String placeholders(String table) {
+        return ", ?".repeat(columns(table).size());
+    }
+
+    /**
+     * Set the columns of the upsert
+     *
+     * @param newValue How the new value is referenced in this database, like "excluded.%s"
+     * @return The assignments after the one of data, like ", world = excluded.world"
+     */
+    static String updates(String table, String newValue) {
+        StringBuilder builder = new StringBuilder();
+        for (Column column : columns(table)) {
+            String value = String.format(newValue, column.name());
+            builder.append(", ").append(column.name()).append(" = ");
+            if (column.keepIfNull()) {
+                builder.append("COALESCE(").append(value).append(", ").append(column.name()).append(")");
+            } else {
+                builder.append(value);
+            }
+        }
+        return builder.toString();
+    }
+
+    static void setColumns(PreparedStatement statement, int startIndex, Object[] values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            statement.setObject(startIndex + i, values[i]);
+        }
+    }
+
+    static Object[] barrelColumns(BarrelSnapshot barrel) {
+        Location spigot = barrel.spigot();
+        return new Object[] {
+                spigot.getWorld().getUID().toString(), spigot.getBlockX() >> 4, spigot.getBlockZ() >> 4,
+                spigot.getBlockX(), spigot.getBlockY(), spigot.getBlockZ(), barrel.time(), barrel.wood()
+        };
+    }
+
+    static Object[] cauldronColumns(SerializableCauldron cauldron) {
+        // "world,x,y,z?=worldName", see DataManager.serializeLocation
+        String location = cauldron.serializedLocation();
+        if (location == null) {
+            return new Object[] {null, null, null, null, null, null, cauldron.state()};
+        }
+        String[] parts = location.split("\\?=")[0].split(",");
+        int x = Integer.parseInt(parts[1]);
+        int y = Integer.parseInt(parts[2]);
+        int z = Integer.parseInt(parts[3]);
+        return new Object[] {parts[0], x >> 4, z >> 4, x, y, z, cauldron.state()};
+    }
+
+    static Object[] playerColumns(SerializableBPlayer player) {
+        return new Object[] {player.quality(), player.drunkenness(), player.offlineDrunkenness()};
+    }
+}
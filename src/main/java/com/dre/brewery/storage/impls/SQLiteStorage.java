@@ -5,7 +5,10 @@ import com.dre.brewery.BPlayer;
 import com.dre.brewery.Barrel;
 import com.dre.brewery.Wakeup;
 import com.dre.brewery.storage.DataManager;
+import com.dre.brewery.storage.impls.NormalizedSchema.Row;
 import com.dre.brewery.storage.StorageInitException;
+import com.dre.brewery.storage.StorageWriteException;
+import com.dre.brewery.storage.records.BarrelSnapshot;
 import com.dre.brewery.storage.records.BreweryMiscData;
 import com.dre.brewery.storage.records.ConfiguredDataManager;
 import com.dre.brewery.storage.records.SerializableBPlayer;
@@ -13,19 +16,26 @@ import com.dre.brewery.storage.records.SerializableBarrel;
 import com.dre.brewery.storage.records.SerializableCauldron;
 import com.dre.brewery.storage.records.SerializableThing;
 import com.dre.brewery.storage.records.SerializableWakeup;
+import com.dre.brewery.storage.serialization.BinaryRecordCodec;
 import com.dre.brewery.storage.serialization.SQLDataSerializer;
+import org.bukkit.inventory.ItemStack;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
 @SuppressWarnings("Duplicates") // Dupe code from MySQLStorage
 public class SQLiteStorage extends DataManager {
@@ -33,15 +43,27 @@ public class SQLiteStorage extends DataManager {
     private static final String URL = "jdbc:sqlite:";
     private static final String[] TABLES = {
             "misc (id VARCHAR(4) PRIMARY KEY, data LONGTEXT);",
-            "barrels (id VARCHAR(36) PRIMARY KEY, data LONGTEXT);",
-            "cauldrons (id VARCHAR(36) PRIMARY KEY, data LONGTEXT);",
-            "players (id VARCHAR(36) PRIMARY KEY, data LONGTEXT);",
-            "wakeups (id VARCHAR(36) PRIMARY KEY, data LONGTEXT);"
+            "barrels (id VARCHAR(36) PRIMARY KEY, data BLOB);",
+            "cauldrons (id VARCHAR(36) PRIMARY KEY, data BLOB);",
+            "players (id VARCHAR(36) PRIMARY KEY, data BLOB);",
+            "wakeups (id VARCHAR(36) PRIMARY KEY, data BLOB);"
     };
+    // Tables of records that can be stored in the binary format, with the type of their records in the old format
+    private static final Map<String, Class<? extends SerializableThing>> RECORD_TABLES = Map.of(
+            "barrels", SerializableBarrel.class,
+            "cauldrons", SerializableCauldron.class,
+            "players", SerializableBPlayer.class,
+            "wakeups", SerializableWakeup.class
+    );
 
     private final Connection connection;
+    // Shared by all uses of the connection, the migration of the tables needs it for itself
+    private final ReentrantReadWriteLock connectionLock = new ReentrantReadWriteLock();
     private final String tablePrefix;
     private final SQLDataSerializer serializer;
+    private final BinaryRecordCodec codec;
+    private volatile boolean binary; // Tables were created or migrated for the binary format
+    private final boolean normalized; // Also save the queryable columns of NormalizedSchema
 
     public SQLiteStorage(ConfiguredDataManager record) throws StorageInitException {
         String fileName = record.database() + ".db";
@@ -59,127 +81,193 @@ public class SQLiteStorage extends DataManager {
             this.connection = DriverManager.getConnection(URL + rawFile.getAbsolutePath());
             this.tablePrefix = record.tablePrefix();
             this.serializer = new SQLDataSerializer();
+            this.codec = serializer.getCodec();
+            this.normalized = record.normalizedSchema();
 
             for (String table : TABLES) {
                 try (PreparedStatement statement = connection.prepareStatement("CREATE TABLE IF NOT EXISTS " + tablePrefix + table)) {
                     statement.execute();
                 }
             }
+            binary = hasBinaryColumns();
+            if (normalized) {
+                NormalizedSchema.createColumns(connection, tablePrefix);
+            }
         } catch (SQLException e) {
             throw new StorageInitException("Failed to connect or create tables!", e);
         }
+        if (!binary) {
+            plugin.log("SQLite data is stored in the old format, use '/brew migratedata' to convert it to the smaller binary format");
+        }
+    }
+
+    private boolean hasBinaryColumns() throws SQLException {
+        for (String table : RECORD_TABLES.keySet()) {
+            if (!isBinaryColumn(tablePrefix + table)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isBinaryColumn(String table) throws SQLException {
+        // SQLite stores any type in any column, but the declared type tells us if the table was migrated
+        try (PreparedStatement statement = connection.prepareStatement("SELECT data FROM " + table + " WHERE 1 = 0");
+             ResultSet resultSet = statement.executeQuery()) {
+            String type = resultSet.getMetaData().getColumnTypeName(1);
+            return type != null && type.toUpperCase().contains("BLOB");
+        }
+    }
+
+    private void setData(PreparedStatement statement, int index, SerializableThing serializableThing) throws SQLException {
+        if (binary || serializableThing instanceof BinaryRecordCodec.Encoded) {
+            statement.setBytes(index, codec.encode(serializableThing));
+        } else {
+            statement.setString(index, serializer.serialize(serializableThing));
+        }
+    }
+
+    private void setRow(PreparedStatement statement, Row row) throws SQLException {
+        statement.setString(1, row.record().getId());
+        setData(statement, 2, row.record());
+        if (normalized && row.columns() != null) {
+            NormalizedSchema.setColumns(statement, 3, row.columns());
+        }
+    }
+
+    private String upsertSql(String table) {
+        if (!normalized) {
+            return "INSERT INTO " + tablePrefix + table + " (id, data) VALUES (?, ?) ON CONFLICT(id) DO UPDATE SET data = excluded.data";
+        }
+        return "INSERT INTO " + tablePrefix + table + " (id, data" + NormalizedSchema.columnNames(table) + ") VALUES (?, ?" + NormalizedSchema.placeholders(table)
+                + ") ON CONFLICT(id) DO UPDATE SET data = excluded.data" + NormalizedSchema.updates(table, "excluded.%s");
     }
 
     @Override
     protected void closeConnection() {
+        // Wait for running queries
+        connectionLock.writeLock().lock();
         try {
             connection.close();
         } catch (SQLException e) {
             plugin.errorLog("Failed to close SQLite connection!", e);
+        } finally {
+            connectionLock.writeLock().unlock();
         }
     }
 
-    private <T> T getGeneric(UUID id, String table, Class<T> type) {
+    private <T> T getGeneric(UUID id, String table, Function<byte[], T> deserializer) {
         String sql = "SELECT data FROM " + tablePrefix + table + " WHERE id = ?";
+        connectionLock.readLock().lock();
         try (PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, id.toString());
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
-                    return serializer.deserialize(resultSet.getString("data"), type);
+                    return deserializer.apply(resultSet.getBytes("data"));
                 }
             }
         } catch (SQLException e) {
             plugin.errorLog("Failed to retrieve object from table: " + table + ", from: SQLite!", e);
+        } finally {
+            connectionLock.readLock().unlock();
         }
         return null;
     }
 
-    private <T> List<T> getAllGeneric(String table, Class<T> type) {
+    private <T> List<T> getAllGeneric(String table, Function<byte[], T> deserializer) {
         String sql = "SELECT id, data FROM " + tablePrefix + table;
-        List<T> objects = new ArrayList<>();
+        List<byte[]> rows = new ArrayList<>();
 
+        connectionLock.readLock().lock();
         try (PreparedStatement statement = connection.prepareStatement(sql);
              ResultSet resultSet = statement.executeQuery()) {
 
             while (resultSet.next()) {
-                String data = resultSet.getString("data");
-                objects.add(serializer.deserialize(data, type));
+                rows.add(resultSet.getBytes("data"));
             }
         } catch (SQLException e) {
             plugin.errorLog("Failed to retrieve objects from table: " + table + ", from: SQLite!", e);
+        } finally {
+            connectionLock.readLock().unlock();
         }
-        return objects;
+        // Deserialize after the query is done, that is the slow part
+        return deserializeAll(rows, deserializer);
     }
 
-    private void saveAllGeneric(List<? extends SerializableThing> serializableThings, String table, boolean overwrite) {
-        String sql;
-        if (overwrite) {
-            sql = "INSERT INTO " + tablePrefix + table + " (id, data) VALUES (?, ?) ON CONFLICT(id) DO UPDATE SET data = excluded.data";
-        } else {
-            sql = "INSERT INTO " + tablePrefix + table + " (id, data) VALUES (?, ?) ON CONFLICT(id) DO NOTHING";
-        }
+    private void saveAllGeneric(List<Row> rows, String table, boolean overwrite) {
+        // Saving only changed things needs to update them as well, so both add or update
+        String sql = upsertSql(table);
 
+        connectionLock.readLock().lock();
         try (PreparedStatement insertStatement = connection.prepareStatement(sql)) {
-            for (SerializableThing serializableThing : serializableThings) {
-                insertStatement.setString(1, serializableThing.getId());
-                insertStatement.setString(2, serializer.serialize(serializableThing));
+            for (Row row : rows) {
+                setRow(insertStatement, row);
                 insertStatement.addBatch();
             }
             insertStatement.executeBatch();
         } catch (SQLException e) {
-            plugin.errorLog("Failed to save objects to SQLite!", e);
+            throw new StorageWriteException("Failed to save objects to SQLite!", e);
+        } finally {
+            connectionLock.readLock().unlock();
         }
     }
 
 
-    private <T extends SerializableThing> void saveGeneric(T serializableThing, String table) {
-        String sql = "INSERT INTO " + tablePrefix + table + " (id, data) VALUES (?, ?) ON CONFLICT(id) DO UPDATE SET data = excluded.data";
+    private void saveGeneric(Row row, String table) {
+        String sql = upsertSql(table);
+        connectionLock.readLock().lock();
         try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, serializableThing.getId());
-            statement.setString(2, serializer.serialize(serializableThing));
+            setRow(statement, row);
             statement.execute();
         } catch (SQLException e) {
             plugin.errorLog("Failed to save object to:" + table + ", to: SQLite!", e);
+        } finally {
+            connectionLock.readLock().unlock();
         }
     }
 
     private void deleteGeneric(UUID id, String table) {
         String sql = "DELETE FROM " + tablePrefix + table + " WHERE id = ?";
+        connectionLock.readLock().lock();
         try (PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, id.toString());
             statement.execute();
         } catch (SQLException e) {
             plugin.errorLog("Failed to delete object from: " + table + ", from: SQLite!", e);
+        } finally {
+            connectionLock.readLock().unlock();
         }
     }
 
     @Override
     public Barrel getBarrel(UUID id) {
-        SerializableBarrel serializableBarrel = getGeneric(id, "barrels", SerializableBarrel.class);
-        if (serializableBarrel != null) {
-            return serializableBarrel.toBarrel();
-        }
-        return null;
+        BarrelSnapshot barrel = getGeneric(id, "barrels", data -> serializer.deserializeBarrel(data, true));
+        return barrel != null ? barrel.toBarrel() : null;
     }
 
     @Override
-    public Collection<Barrel> getAllBarrels() {
-        return getAllGeneric("barrels", SerializableBarrel.class).stream()
-                .map(SerializableBarrel::toBarrel)
-                .toList();
+    public Collection<BarrelSnapshot> getAllBarrelSnapshots(boolean withContents) {
+        return getAllGeneric("barrels", data -> serializer.deserializeBarrel(data, withContents));
     }
 
     @Override
-    public void saveAllBarrels(Collection<Barrel> barrels, boolean overwrite) {
-        List<SerializableBarrel> serializableBarrels = barrels.stream()
-                .map(SerializableBarrel::new)
-                .toList();
-        saveAllGeneric(serializableBarrels, "barrels", overwrite);
+    public ItemStack[] getBarrelContents(UUID id) {
+        return getGeneric(id, "barrels", serializer::deserializeBarrelContents);
+    }
+
+    @Override
+    public void saveAllBarrels(Collection<BarrelSnapshot> barrels, boolean overwrite) {
+        // Encode the items right away, instead of to Base64 and back
+        saveAllGeneric(barrels.stream().map(this::barrelRow).toList(), "barrels", overwrite);
     }
 
     @Override
     public void saveBarrel(Barrel barrel) {
-        saveGeneric(new SerializableBarrel(barrel), "barrels");
+        saveGeneric(barrelRow(BarrelSnapshot.of(barrel)), "barrels");
+    }
+
+    private Row barrelRow(BarrelSnapshot barrel) {
+        return new Row(binary ? codec.encodeRecord(barrel) : new SerializableBarrel(barrel), normalized ? NormalizedSchema.barrelColumns(barrel) : null);
     }
 
     @Override
@@ -189,31 +277,26 @@ public class SQLiteStorage extends DataManager {
 
     @Override
     public BCauldron getCauldron(UUID id) {
-        SerializableCauldron serializableCauldron = getGeneric(id, "cauldrons", SerializableCauldron.class);
-        if (serializableCauldron != null) {
-            return serializableCauldron.toCauldron();
-        }
-        return null;
+        return getGeneric(id, "cauldrons", serializer::deserializeCauldron);
     }
 
     @Override
     public Collection<BCauldron> getAllCauldrons() {
-        return getAllGeneric("cauldrons", SerializableCauldron.class).stream()
-                .map(SerializableCauldron::toCauldron)
-                .toList();
+        return getAllGeneric("cauldrons", serializer::deserializeCauldron);
     }
 
     @Override
-    public void saveAllCauldrons(Collection<BCauldron> cauldrons, boolean overwrite) {
-        List<SerializableCauldron> serializableCauldrons = cauldrons.stream()
-                .map(SerializableCauldron::new)
-                .toList();
-        saveAllGeneric(serializableCauldrons, "cauldrons", overwrite);
+    public void saveAllCauldrons(Collection<SerializableCauldron> cauldrons, boolean overwrite) {
+        saveAllGeneric(cauldrons.stream().map(this::cauldronRow).toList(), "cauldrons", overwrite);
     }
 
     @Override
     public void saveCauldron(BCauldron cauldron) {
-        saveGeneric(new SerializableCauldron(cauldron), "cauldrons");
+        saveGeneric(cauldronRow(new SerializableCauldron(cauldron)), "cauldrons");
+    }
+
+    private Row cauldronRow(SerializableCauldron cauldron) {
+        return new Row(cauldron, normalized ? NormalizedSchema.cauldronColumns(cauldron) : null);
     }
 
     @Override
@@ -223,31 +306,26 @@ public class SQLiteStorage extends DataManager {
 
     @Override
     public BPlayer getPlayer(UUID playerUUID) {
-        SerializableBPlayer serializableBPlayer = getGeneric(playerUUID, "players", SerializableBPlayer.class);
-        if (serializableBPlayer != null) {
-            return serializableBPlayer.toBPlayer();
-        }
-        return null;
+        return getGeneric(playerUUID, "players", serializer::deserializePlayer);
     }
 
     @Override
     public Collection<BPlayer> getAllPlayers() {
-        return getAllGeneric("players", SerializableBPlayer.class).stream()
-                .map(SerializableBPlayer::toBPlayer)
-                .toList();
+        return getAllGeneric("players", serializer::deserializePlayer);
     }
 
     @Override
-    public void saveAllPlayers(Collection<BPlayer> players, boolean overwrite) {
-        List<SerializableBPlayer> serializableBPlayers = players.stream()
-                .map(SerializableBPlayer::new)
-                .toList();
-        saveAllGeneric(serializableBPlayers, "players", overwrite);
+    public void saveAllPlayers(Collection<SerializableBPlayer> players, boolean overwrite) {
+        saveAllGeneric(players.stream().map(this::playerRow).toList(), "players", overwrite);
     }
 
     @Override
     public void savePlayer(BPlayer player) {
-        saveGeneric(new SerializableBPlayer(player), "players");
+        saveGeneric(playerRow(new SerializableBPlayer(player)), "players");
+    }
+
+    private Row playerRow(SerializableBPlayer player) {
+        return new Row(player, normalized ? NormalizedSchema.playerColumns(player) : null);
     }
 
     @Override
@@ -257,31 +335,22 @@ public class SQLiteStorage extends DataManager {
 
     @Override
     public Wakeup getWakeup(UUID id) {
-        SerializableWakeup serializableWakeup = getGeneric(id, "wakeups", SerializableWakeup.class);
-        if (serializableWakeup != null) {
-            return serializableWakeup.toWakeup();
-        }
-        return null;
+        return getGeneric(id, "wakeups", serializer::deserializeWakeup);
     }
 
     @Override
     public Collection<Wakeup> getAllWakeups() {
-        return getAllGeneric("wakeups", SerializableWakeup.class).stream()
-                .map(SerializableWakeup::toWakeup)
-                .toList();
+        return getAllGeneric("wakeups", serializer::deserializeWakeup);
     }
 
     @Override
-    public void saveAllWakeups(Collection<Wakeup> wakeups, boolean overwrite) {
-        List<SerializableWakeup> serializableWakeups = wakeups.stream()
-                .map(SerializableWakeup::new)
-                .toList();
-        saveAllGeneric(serializableWakeups, "wakeups", overwrite);
+    public void saveAllWakeups(Collection<SerializableWakeup> wakeups, boolean overwrite) {
+        saveAllGeneric(wakeups.stream().map(wakeup -> new Row(wakeup, null)).toList(), "wakeups", overwrite);
     }
 
     @Override
     public void saveWakeup(Wakeup wakeup) {
-        saveGeneric(new SerializableWakeup(wakeup), "wakeups");
+        saveGeneric(new Row(new SerializableWakeup(wakeup), null), "wakeups");
     }
 
     @Override
@@ -292,6 +361,7 @@ public class SQLiteStorage extends DataManager {
     @Override
     public BreweryMiscData getBreweryMiscData() {
         String sql = "SELECT CASE WHEN EXISTS (SELECT 1 FROM " + tablePrefix + "misc WHERE id = 'misc') THEN (SELECT data FROM " + tablePrefix + "misc WHERE id = 'misc') ELSE NULL END AS data";
+        connectionLock.readLock().lock();
         try (PreparedStatement statement = connection.prepareStatement(sql);
              ResultSet resultSet = statement.executeQuery()) {
             if (resultSet.next() && resultSet.getString("data") != null) {
@@ -299,18 +369,113 @@ public class SQLiteStorage extends DataManager {
             }
         } catch (SQLException e) {
             plugin.errorLog("Failed to retrieve misc data from SQLite!", e);
+        } finally {
+            connectionLock.readLock().unlock();
         }
-        return new BreweryMiscData(System.currentTimeMillis(), 0, new ArrayList<>(), new ArrayList<>(), 0);
+        return new BreweryMiscData(System.currentTimeMillis(), 0, new ArrayList<>(), new ArrayList<>(), 0, 0);
     }
 
     @Override
     public void saveBreweryMiscData(BreweryMiscData data) {
         String sql = "INSERT INTO " + tablePrefix + "misc (id, data) VALUES ('misc', ?) ON CONFLICT(id) DO UPDATE SET data = excluded.data";
+        connectionLock.readLock().lock();
         try (PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, serializer.serialize(data));
             statement.execute();
         } catch (SQLException e) {
             plugin.errorLog("Failed to save misc data to SQLite!", e);
+        } finally {
+            connectionLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean hasRecordFormatMigration() {
+        return true;
+    }
+
+    @Override
+    public int migrateRecordFormat() {
+        int converted = 0;
+        try {
+            // Copying the tables turns off auto commit and drops them, nothing else may use the connection meanwhile
+            connectionLock.writeLock().lock();
+            try {
+                for (String table : RECORD_TABLES.keySet()) {
+                    if (!isBinaryColumn(tablePrefix + table)) {
+                        retypeTable(tablePrefix + table);
+                    }
+                }
+                binary = true;
+                if (normalized) {
+                    // The copied tables only have id and data, the columns are filled again on the next save
+                    NormalizedSchema.createColumns(connection, tablePrefix);
+                }
+            } finally {
+                connectionLock.writeLock().unlock();
+            }
+
+            for (Map.Entry<String, Class<? extends SerializableThing>> entry : RECORD_TABLES.entrySet()) {
+                converted += convertRecords(entry.getKey(), entry.getValue());
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to migrate SQLite data to the binary format!", e);
+        }
+        return converted;
+    }
+
+    // SQLite can't change the type of a column, copy the table into one with the new type
+    private void retypeTable(String table) throws SQLException {
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE " + table + "_new (id VARCHAR(36) PRIMARY KEY, data BLOB)");
+            statement.execute("INSERT INTO " + table + "_new (id, data) SELECT id, data FROM " + table);
+            statement.execute("DROP TABLE " + table);
+            statement.execute("ALTER TABLE " + table + "_new RENAME TO " + table);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private int convertRecords(String table, Class<? extends SerializableThing> type) throws SQLException {
+        // Single rows can be updated while the server runs, the update checks that the row was not saved again
+        connectionLock.readLock().lock();
+        try {
+            return convertRecordsLocked(table, type);
+        } finally {
+            connectionLock.readLock().unlock();
+        }
+    }
+
+    private int convertRecordsLocked(String table, Class<? extends SerializableThing> type) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        List<byte[]> oldData = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT id, data FROM " + tablePrefix + table);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                byte[] data = resultSet.getBytes("data");
+                if (!BinaryRecordCodec.isBinary(data)) {
+                    ids.add(resultSet.getString("id"));
+                    oldData.add(data);
+                }
+            }
+        }
+
+        // Only replace records that were not saved again in the meantime, old records are stored as text
+        String sql = "UPDATE " + tablePrefix + table + " SET data = ? WHERE id = ? AND data = ?";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < ids.size(); i++) {
+                statement.setBytes(1, serializer.toBinary(oldData.get(i), type));
+                statement.setString(2, ids.get(i));
+                statement.setString(3, new String(oldData.get(i), StandardCharsets.UTF_8));
+                statement.addBatch();
+            }
+            statement.executeBatch();
         }
+        return ids.size();
     }
 }
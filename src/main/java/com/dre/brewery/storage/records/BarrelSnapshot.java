@@ -0,0 +1,69 @@
+package com.dre.brewery.storage.records;
+
+import com.dre.brewery.Barrel;
+import com.dre.brewery.utility.BoundingBox;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Copy of the data of a Barrel, taken on the main thread so it can be serialized on another.
+ * <p>Also the data of a stored Barrel, decoded on another thread so the Barrel can be created on the main thread with {@link #toBarrel()}.
+ * @param id The UUID of the barrel
+ * @param spigot The Location of the Spigot of the barrel
+ * @param bounds The bounds of the barrel
+ * @param time The aging time of the barrel at the clock
+ * @param clock The global aging clock when the copy was taken
+ * @param sign The sign byte offset the barrel
+ * @param items Copies of the ItemStacks in the inventory of the barrel, null if the contents were not loaded
+ * @param wood The wood type of the barrel, null if it could not be read without loading chunks
+ */
+public record BarrelSnapshot(UUID id, Location spigot, List<Integer> bounds, float time, double clock, byte sign, ItemStack[] items, Byte wood) {
+
+    public static BarrelSnapshot of(Barrel barrel) {
+        double clock = Barrel.getAgingClock();
+        // The contents may be live mirrors of the inventory, copy them
+        ItemStack[] contents = barrel.getInventory().getContents();
+        ItemStack[] items = new ItemStack[contents.length];
+        for (int i = 0; i < contents.length; i++) {
+            if (contents[i] != null) {
+                items[i] = contents[i].clone();
+            }
+        }
+        return new BarrelSnapshot(barrel.getId(), barrel.getSpigot().getLocation(), barrel.getBody().getBounds().serializeToIntList(),
+                barrel.getTime(clock), clock, barrel.getBody().getSignoffset(), items, getWood(barrel));
+    }
+
+    /**
+     * Create the Barrel from this data, has to be called on the main thread.
+     * <p>Without items, the contents are loaded later, see {@link com.dre.brewery.filedata.BConfig#lazyBarrels}
+     */
+    public Barrel toBarrel() {
+        Block block = spigot.getBlock();
+        BoundingBox box = BoundingBox.fromPoints(bounds);
+        // Unchanged Barrels are not saved every time, add the aging since it was saved
+        float age = (float) (time + Barrel.getAgingClock() - clock);
+        if (items == null) {
+            return new Barrel(block, sign, box, age, id);
+        }
+        return new Barrel(block, sign, box, items, age, id);
+    }
+
+    private static Byte getWood(Barrel barrel) {
+        // The wood is read from the blocks next to the spigot, which may be in a neighbouring chunk
+        Block spigot = barrel.getSpigot();
+        World world = spigot.getWorld();
+        for (int x = -1; x <= 1; x += 2) {
+            for (int z = -1; z <= 1; z += 2) {
+                if (!world.isChunkLoaded((spigot.getX() + x) >> 4, (spigot.getZ() + z) >> 4)) {
+                    return null;
+                }
+            }
+        }
+        return barrel.getBody().getWood();
+    }
+}
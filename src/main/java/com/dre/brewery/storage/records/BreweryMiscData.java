@@ -6,9 +6,10 @@ import java.util.List;
  * Miscellaneous save data about brewery.
  * These were added by the original author(s) and their source/usage hasn't been completely
  * read through by me.
+ * <p>agingClock is the global Barrel aging clock, 0 in data from older versions
  */
 public record BreweryMiscData(long installTime, long mcBarrelTime, List<Long> prevSaveSeeds, List<Integer> brewsCreated,
-                              int brewsCreatedHash) implements SerializableThing {
+                              int brewsCreatedHash, double agingClock) implements SerializableThing {
 
     @Override
     public String getId() {
@@ -4,8 +4,9 @@ import com.dre.brewery.Barrel;
 import com.dre.brewery.storage.DataManager;
 import com.dre.brewery.storage.serialization.BukkitSerialization;
 import com.dre.brewery.utility.BUtil;
-import com.dre.brewery.utility.BoundingBox;
 import org.bukkit.Location;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 
@@ -14,21 +15,45 @@ import java.util.List;
  * @param id The UUID of the barrel
  * @param serializedLocation The Block/Location of the Spigot of the barrel
  * @param bounds The bounds of the barrel
- * @param time no idea
+ * @param time The aging time since the barrel was last opened, computed from the global aging clock when saving
  * @param sign The sign byte offset the barrel
  * @param serializedItems Serialized ItemStacks 'BukkitSerialization.itemStackArrayToBase64(ItemStack[])'
+ * @param clock The global aging clock when saving, null in data from older versions
  */
-public record SerializableBarrel(String id, String serializedLocation, List<Integer> bounds, float time, byte sign, String serializedItems) implements SerializableThing {
+public record SerializableBarrel(String id, String serializedLocation, List<Integer> bounds, float time, byte sign, String serializedItems, Double clock) implements SerializableThing {
     public SerializableBarrel(Barrel barrel) {
-        this(barrel.getId().toString(), DataManager.serializeLocation(barrel.getSpigot().getLocation()), barrel.getBody().getBounds().serializeToIntList(), barrel.getTime(), barrel.getBody().getSignoffset(), BukkitSerialization.itemStackArrayToBase64(barrel.getInventory().getContents()));
+        this(BarrelSnapshot.of(barrel));
     }
 
-    public Barrel toBarrel() {
+    public SerializableBarrel(BarrelSnapshot barrel) {
+        this(barrel.id().toString(), DataManager.serializeLocation(barrel.spigot()), barrel.bounds(), barrel.time(), barrel.sign(), BukkitSerialization.itemStackArrayToBase64(barrel.items()), barrel.clock());
+    }
+
+    /**
+     * Decode the data of the Barrel, the Barrel itself is created from it on the main thread
+     *
+     * @param withContents Also deserialize the items, otherwise they are loaded when needed
+     * @return The data, null if its world does not exist
+     */
+    @Nullable
+    public BarrelSnapshot toSnapshot(boolean withContents) {
+        return toSnapshot(id, serializedLocation, bounds, time, sign, withContents ? BukkitSerialization.itemStackArrayFromBase64(serializedItems) : null, withContents, clock);
+    }
+
+    /**
+     * Decode the data of the Barrel, used by all formats the data may be stored in.
+     */
+    @Nullable
+    public static BarrelSnapshot toSnapshot(String id, String serializedLocation, List<Integer> bounds, float time, byte sign, ItemStack[] items, boolean withContents, Double clock) {
         Location loc = DataManager.deserializeLocation(serializedLocation);
         if (loc == null) {
             return null;
         }
-        return new Barrel(loc.getBlock(), sign, BoundingBox.fromPoints(bounds), BukkitSerialization.itemStackArrayFromBase64(serializedItems), time, BUtil.uuidFromString(id));
+        if (withContents && items == null) {
+            // Empty barrel, without items the contents would count as not loaded
+            items = new ItemStack[0];
+        }
+        return new BarrelSnapshot(BUtil.uuidFromString(id), loc, bounds, time, clock != null ? clock : Barrel.getAgingClock(), sign, items, null);
     }
 
     @Override
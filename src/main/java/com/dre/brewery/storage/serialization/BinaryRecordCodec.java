@@ -0,0 +1,313 @@
+package com.dre.brewery.storage.serialization;
+
+import com.dre.brewery.storage.DataManager;
+import com.dre.brewery.storage.records.BarrelSnapshot;
+import com.dre.brewery.storage.records.BreweryMiscData;
+import com.dre.brewery.storage.records.SerializableBPlayer;
+import com.dre.brewery.storage.records.SerializableBarrel;
+import com.dre.brewery.storage.records.SerializableCauldron;
+import com.dre.brewery.storage.records.SerializableThing;
+import com.dre.brewery.storage.records.SerializableWakeup;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.external.biz.base64Coder.Base64Coder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact binary format for the records stored in SQL databases.
+ * <p>Replaces the Base64 encoded JSON of {@link SQLDataSerializer}, which Base64 encoded the items of Barrels a second time.
+ * <p>Layout: magic byte, version, flags, record type, then the length-prefixed fields of the record.
+ * The fields are deflated if that makes them smaller.
+ * <p>The magic byte is not a Base64 character, so data in the old format can be told apart with {@link #isBinary(byte[])}.
+ */
+public class BinaryRecordCodec {
+
+    private static final byte MAGIC = (byte) 0xB7;
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 4;
+    private static final byte FLAG_DEFLATED = 1;
+    private static final int COMPRESS_THRESHOLD = 256; // Don't try to compress fields smaller than this
+
+    private static final byte TYPE_BARREL = 1;
+    private static final byte TYPE_CAULDRON = 2;
+    private static final byte TYPE_PLAYER = 3;
+    private static final byte TYPE_WAKEUP = 4;
+    private static final byte TYPE_MISC = 5;
+
+    /**
+     * @return true if the data is in this format, false if it is in the old format
+     */
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length >= HEADER_SIZE && data[0] == MAGIC;
+    }
+
+    public byte[] encode(BarrelSnapshot barrel) {
+        return encodeBarrel(barrel.id().toString(), DataManager.serializeLocation(barrel.spigot()), barrel.bounds(), barrel.time(),
+            barrel.clock(), barrel.sign(), BukkitSerialization.itemStackArrayToBytes(barrel.items()));
+    }
+
+    /**
+     * Encode a record of any type, used to convert data from the old format
+     */
+    public byte[] encode(SerializableThing thing) {
+        if (thing instanceof SerializableBarrel barrel) {
+            byte[] items = barrel.serializedItems() == null ? null : Base64Coder.decodeLines(barrel.serializedItems());
+            return encodeBarrel(barrel.id(), barrel.serializedLocation(), barrel.bounds(), barrel.time(), barrel.clock(), barrel.sign(), items);
+        } else if (thing instanceof SerializableCauldron cauldron) {
+            return encode(TYPE_CAULDRON, out -> {
+                writeString(out, cauldron.id());
+                writeString(out, cauldron.serializedLocation());
+                writeString(out, cauldron.serializedIngredients());
+                out.writeInt(cauldron.state());
+            });
+        } else if (thing instanceof SerializableBPlayer player) {
+            return encode(TYPE_PLAYER, out -> {
+                writeString(out, player.id());
+                out.writeInt(player.quality());
+                out.writeInt(player.drunkenness());
+                out.writeInt(player.offlineDrunkenness());
+            });
+        } else if (thing instanceof SerializableWakeup wakeup) {
+            return encode(TYPE_WAKEUP, out -> {
+                writeString(out, wakeup.id());
+                writeString(out, wakeup.serializedLocation());
+            });
+        } else if (thing instanceof BreweryMiscData misc) {
+            return encode(TYPE_MISC, out -> {
+                out.writeLong(misc.installTime());
+                out.writeLong(misc.mcBarrelTime());
+                out.writeInt(misc.prevSaveSeeds().size());
+                for (long seed : misc.prevSaveSeeds()) {
+                    out.writeLong(seed);
+                }
+                out.writeInt(misc.brewsCreated().size());
+                for (int created : misc.brewsCreated()) {
+                    out.writeInt(created);
+                }
+                out.writeInt(misc.brewsCreatedHash());
+                out.writeDouble(misc.agingClock());
+            });
+        } else if (thing instanceof Encoded encoded) {
+            return encoded.data();
+        }
+        throw new IllegalArgumentException("Unknown record type: " + thing.getClass().getName());
+    }
+
+    /**
+     * Encode into a record with its id, to be saved like any other record
+     */
+    public Encoded encodeRecord(BarrelSnapshot barrel) {
+        return new Encoded(barrel.id().toString(), encode(barrel));
+    }
+
+    public Encoded encodeRecord(SerializableThing thing) {
+        return new Encoded(thing.getId(), encode(thing));
+    }
+
+    private byte[] encodeBarrel(String id, String location, List<Integer> bounds, float time, Double clock, byte sign, byte[] items) {
+        return encode(TYPE_BARREL, out -> {
+            writeString(out, id);
+            writeString(out, location);
+            out.writeInt(bounds.size());
+            for (int bound : bounds) {
+                out.writeInt(bound);
+            }
+            out.writeFloat(time);
+            out.writeBoolean(clock != null);
+            if (clock != null) {
+                out.writeDouble(clock);
+            }
+            out.writeByte(sign);
+            writeBytes(out, items);
+        });
+    }
+
+    /**
+     * Decode the data of the Barrel, the Barrel itself is created from it on the main thread
+     *
+     * @return The data, null if its world does not exist
+     */
+    @Nullable
+    public BarrelSnapshot decodeBarrelSnapshot(byte[] data) {
+        return decodeBarrelSnapshot(data, true);
+    }
+
+    /**
+     * @param withContents Also deserialize the items, otherwise they are loaded when needed
+     */
+    @Nullable
+    public BarrelSnapshot decodeBarrelSnapshot(byte[] data, boolean withContents) {
+        BarrelFields barrel = decodeBarrelFields(data);
+        return SerializableBarrel.toSnapshot(barrel.id, barrel.location, barrel.bounds, barrel.time, barrel.sign,
+            withContents ? BukkitSerialization.itemStackArrayFromBytes(barrel.items) : null, withContents, barrel.clock);
+    }
+
+    public ItemStack[] decodeBarrelContents(byte[] data) {
+        return BukkitSerialization.itemStackArrayFromBytes(decodeBarrelFields(data).items);
+    }
+
+    private BarrelFields decodeBarrelFields(byte[] data) {
+        return decode(data, TYPE_BARREL, in -> {
+            String id = readString(in);
+            String location = readString(in);
+            int size = in.readInt();
+            List<Integer> bounds = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                bounds.add(in.readInt());
+            }
+            float time = in.readFloat();
+            Double clock = in.readBoolean() ? in.readDouble() : null;
+            byte sign = in.readByte();
+            byte[] items = readBytes(in);
+            return new BarrelFields(id, location, bounds, time, clock, sign, items);
+        });
+    }
+
+    private record BarrelFields(String id, String location, List<Integer> bounds, float time, Double clock, byte sign, byte[] items) {
+    }
+
+    public SerializableCauldron decodeCauldron(byte[] data) {
+        return decode(data, TYPE_CAULDRON, in -> new SerializableCauldron(readString(in), readString(in), readString(in), in.readInt()));
+    }
+
+    public SerializableBPlayer decodePlayer(byte[] data) {
+        return decode(data, TYPE_PLAYER, in -> new SerializableBPlayer(readString(in), in.readInt(), in.readInt(), in.readInt()));
+    }
+
+    public SerializableWakeup decodeWakeup(byte[] data) {
+        return decode(data, TYPE_WAKEUP, in -> new SerializableWakeup(readString(in), readString(in)));
+    }
+
+    public BreweryMiscData decodeMisc(byte[] data) {
+        return decode(data, TYPE_MISC, in -> {
+            long installTime = in.readLong();
+            long mcBarrelTime = in.readLong();
+            int seedCount = in.readInt();
+            List<Long> prevSaveSeeds = new ArrayList<>(seedCount);
+            for (int i = 0; i < seedCount; i++) {
+                prevSaveSeeds.add(in.readLong());
+            }
+            int createdCount = in.readInt();
+            List<Integer> brewsCreated = new ArrayList<>(createdCount);
+            for (int i = 0; i < createdCount; i++) {
+                brewsCreated.add(in.readInt());
+            }
+            return new BreweryMiscData(installTime, mcBarrelTime, prevSaveSeeds, brewsCreated, in.readInt(), in.readDouble());
+        });
+    }
+
+
+    private byte[] encode(byte type, FieldWriter writer) {
+        try {
+            ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream(128);
+            try (DataOutputStream out = new DataOutputStream(fieldBytes)) {
+                writer.write(out);
+            }
+            byte[] fields = fieldBytes.toByteArray();
+            byte flags = 0;
+
+            if (fields.length >= COMPRESS_THRESHOLD) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(fields.length / 2);
+                try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed)) {
+                    deflater.write(fields);
+                }
+                if (compressed.size() < fields.length) {
+                    fields = compressed.toByteArray();
+                    flags |= FLAG_DEFLATED;
+                }
+            }
+
+            byte[] data = new byte[HEADER_SIZE + fields.length];
+            data[0] = MAGIC;
+            data[1] = VERSION;
+            data[2] = flags;
+            data[3] = type;
+            System.arraycopy(fields, 0, data, HEADER_SIZE, fields.length);
+            return data;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to encode record", e);
+        }
+    }
+
+    private <T> T decode(byte[] data, byte type, FieldReader<T> reader) {
+        if (!isBinary(data)) {
+            throw new IllegalArgumentException("Data is not in the binary record format");
+        }
+        if (data[1] > VERSION) {
+            throw new IllegalStateException("Record was saved by a newer version (format " + data[1] + ")");
+        }
+        if (data[3] != type) {
+            throw new IllegalArgumentException("Expected record type " + type + " but got " + data[3]);
+        }
+        InputStream fields = new ByteArrayInputStream(data, HEADER_SIZE, data.length - HEADER_SIZE);
+        if ((data[2] & FLAG_DEFLATED) != 0) {
+            fields = new InflaterInputStream(fields);
+        }
+        try (DataInputStream in = new DataInputStream(fields)) {
+            return reader.read(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to decode record", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        writeBytes(out, string == null ? null : string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    @FunctionalInterface
+    private interface FieldWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface FieldReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * A record that is already encoded
+     * @param id The id of the record
+     * @param data The encoded record
+     */
+    public record Encoded(String id, byte[] data) implements SerializableThing {
+        @Override
+        public String getId() {
+            return id;
+        }
+    }
+}
@@ -42,7 +42,17 @@ public class BukkitSerialization {
      * @throws IllegalStateException
      */
     public static String itemStackArrayToBase64(ItemStack[] items) throws IllegalStateException {
+        return Base64Coder.encodeLines(itemStackArrayToBytes(items));
+    }
 
+    /**
+     * Serialize an {@link ItemStack} array to raw bytes, without the Base64 encoding.
+     *
+     * @param items to serialize
+     * @return The serialized items
+     * @throws IllegalStateException
+     */
+    public static byte[] itemStackArrayToBytes(ItemStack[] items) throws IllegalStateException {
         try {
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
             BukkitObjectOutputStream dataOutput = new BukkitObjectOutputStream(outputStream);
@@ -57,7 +67,7 @@ public class BukkitSerialization {
 
             // Serialize that array
             dataOutput.close();
-            return Base64Coder.encodeLines(outputStream.toByteArray());
+            return outputStream.toByteArray();
         } catch (Exception e) {
             throw new IllegalStateException("Unable to save item stacks.", e);
         }
@@ -149,9 +159,22 @@ public class BukkitSerialization {
         if (data == null || data.isEmpty()) {
             return null;
         }
+        return itemStackArrayFromBytes(Base64Coder.decodeLines(data));
+    }
+
+    /**
+     * Gets an array of ItemStacks from raw bytes, see {@link #itemStackArrayToBytes(ItemStack[])}.
+     *
+     * @param data The serialized items
+     * @return ItemStack array created from the data.
+     */
+    public static ItemStack[] itemStackArrayFromBytes(byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
 
         try {
-            ByteArrayInputStream inputStream = new ByteArrayInputStream(Base64Coder.decodeLines(data));
+            ByteArrayInputStream inputStream = new ByteArrayInputStream(data);
             BukkitObjectInputStream dataInput = new BukkitObjectInputStream(inputStream);
             ItemStack[] items = new ItemStack[dataInput.readInt()];
 
@@ -1,16 +1,33 @@
 package com.dre.brewery.storage.serialization;
 
+import com.dre.brewery.BCauldron;
+import com.dre.brewery.BPlayer;
+import com.dre.brewery.Wakeup;
+import com.dre.brewery.storage.records.BarrelSnapshot;
+import com.dre.brewery.storage.records.SerializableBPlayer;
+import com.dre.brewery.storage.records.SerializableBarrel;
+import com.dre.brewery.storage.records.SerializableCauldron;
+import com.dre.brewery.storage.records.SerializableThing;
+import com.dre.brewery.storage.records.SerializableWakeup;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import org.bukkit.inventory.ItemStack;
 
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
 /**
  * Serializes the given object to JSON and then to a Base64 encoded string.
+ * <p>Records are read from either this format or the compact {@link BinaryRecordCodec} format.
  */
 public class SQLDataSerializer {
-    private final Gson gson = new GsonBuilder().setPrettyPrinting().excludeFieldsWithModifiers(Modifier.STATIC).create();
+    private final Gson gson = new GsonBuilder().excludeFieldsWithModifiers(Modifier.STATIC).create();
+    private final BinaryRecordCodec codec = new BinaryRecordCodec();
+
+    public BinaryRecordCodec getCodec() {
+        return codec;
+    }
 
     public String serialize(Object object) {
         return Base64.getEncoder().encodeToString(gson.toJson(object).getBytes());
@@ -20,6 +37,57 @@ public class SQLDataSerializer {
         return gson.fromJson(new String(Base64.getDecoder().decode(data)), type);
     }
 
+    public <T> T deserialize(byte[] data, Class<T> type) {
+        return deserialize(new String(data, StandardCharsets.UTF_8), type);
+    }
+
+    /**
+     * Convert a record in this format to the binary format
+     */
+    public byte[] toBinary(byte[] data, Class<? extends SerializableThing> type) {
+        return codec.encode(deserialize(data, type));
+    }
+
+    /**
+     * Decode the data of the Barrel, the Barrel itself is created from it on the main thread
+     *
+     * @param withContents Also deserialize the items, otherwise they are loaded when needed
+     */
+    public BarrelSnapshot deserializeBarrel(byte[] data, boolean withContents) {
+        if (BinaryRecordCodec.isBinary(data)) {
+            return codec.decodeBarrelSnapshot(data, withContents);
+        }
+        return deserialize(data, SerializableBarrel.class).toSnapshot(withContents);
+    }
+
+    public ItemStack[] deserializeBarrelContents(byte[] data) {
+        if (BinaryRecordCodec.isBinary(data)) {
+            return codec.decodeBarrelContents(data);
+        }
+        return BukkitSerialization.itemStackArrayFromBase64(deserialize(data, SerializableBarrel.class).serializedItems());
+    }
+
+    public BCauldron deserializeCauldron(byte[] data) {
+        if (BinaryRecordCodec.isBinary(data)) {
+            return codec.decodeCauldron(data).toCauldron();
+        }
+        return deserialize(data, SerializableCauldron.class).toCauldron();
+    }
+
+    public BPlayer deserializePlayer(byte[] data) {
+        if (BinaryRecordCodec.isBinary(data)) {
+            return codec.decodePlayer(data).toBPlayer();
+        }
+        return deserialize(data, SerializableBPlayer.class).toBPlayer();
+    }
+
+    public Wakeup deserializeWakeup(byte[] data) {
+        if (BinaryRecordCodec.isBinary(data)) {
+            return codec.decodeWakeup(data).toWakeup();
+        }
+        return deserialize(data, SerializableWakeup.class).toWakeup();
+    }
+
     public <T> T deserialize(String data, Class<T> type, T defaultValue) {
         try {
             return deserialize(data, type);
@@ -4,6 +4,7 @@ import com.dre.brewery.BCauldron;
 import com.dre.brewery.Barrel;
 import com.dre.brewery.BreweryPlugin;
 import com.dre.brewery.api.events.barrel.BarrelDestroyEvent;
+import com.dre.brewery.storage.DataManager;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Color;
@@ -49,6 +50,21 @@ public class BUtil {
 		return block.getWorld().isChunkLoaded(block.getX() >> 4, block.getZ() >> 4);
 	}
 
+	/**
+	 * Pack chunk coordinates into a single long, usable as a map key
+	 */
+	public static long chunkKey(int chunkX, int chunkZ) {
+		return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Pack block coordinates into a single long, usable as a map key within one world
+	 * <p>x and z use 26 bits each, y uses 12 bits
+	 */
+	public static long blockKey(int x, int y, int z) {
+		return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+	}
+
 	/**
 	 * Color code a message. Supports HEX colors and default minecraft colors!
 	 * @param msg The message to color
@@ -230,6 +246,16 @@ public class BUtil {
 		return -1;
 	}
 
+	/**
+	 * Case fold a String so that two Strings are equalsIgnoreCase() if and only if their folded forms are equal.
+	 * <p>Useful as key for case insensitive lookups in a HashMap
+	 */
+	public static String foldCase(String string) {
+		StringBuilder folded = new StringBuilder(string.length());
+		string.codePoints().forEach(c -> folded.appendCodePoint(Character.toLowerCase(Character.toUpperCase(c))));
+		return folded.toString();
+	}
+
 	/**
 	 * Returns the index of a String from the list that starts with 'lineStart', returns -1 if not found;
 	 */
@@ -275,6 +301,14 @@ public class BUtil {
 		}
 	}
 
+	/**
+	 * Could a Block of this type be part of a Barrel or Cauldron
+	 */
+	public static boolean isBarrelOrCauldronType(Material type) {
+		return type == Material.CAULDRON || LegacyUtil.isWaterCauldron(type) || LegacyUtil.isFence(type) || LegacyUtil.isSign(type)
+			|| LegacyUtil.isWoodPlanks(type) || LegacyUtil.isWoodStairs(type);
+	}
+
 	/**
 	 * Returns true if the Block can be destroyed by the Player or something else (null)
 	 *
@@ -286,6 +320,10 @@ public class BUtil {
 			return true;
 		}
 		Material type = block.getType();
+		if (DataManager.isLoading() && isBarrelOrCauldronType(type)) {
+			// May belong to a Barrel or Cauldron that is not loaded yet
+			return false;
+		}
 		if (type == Material.CAULDRON || type == LegacyUtil.WATER_CAULDRON) {
 			// will only remove when existing
 			BCauldron.remove(block);
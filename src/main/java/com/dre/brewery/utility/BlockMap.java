@@ -0,0 +1,306 @@
+package com.dre.brewery.utility;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Maps Blocks to values, for the registries of blocks that are looked up on every interaction.
+ * <p>Blocks are keyed by their World and their coordinates packed with {@link BUtil#blockKey}, not by the Block object,
+ * so two Block objects at the same position always find the same value and looking up doesn't allocate.
+ * <p>Thread safe. Each World has its own table of primitive keys, which is locked while it is used.
+ *
+ * @param <V> The type of the values, has to store its Block itself if it is needed again
+ */
+public class BlockMap<V> {
+
+	private final Map<UUID, Table> worlds = new ConcurrentHashMap<>();
+
+	@Nullable
+	public V get(@NotNull Block block) {
+		Table table = worlds.get(block.getWorld().getUID());
+		if (table == null) {
+			return null;
+		}
+		synchronized (table) {
+			return table.get(key(block));
+		}
+	}
+
+	public boolean containsKey(@NotNull Block block) {
+		return get(block) != null;
+	}
+
+	/**
+	 * @return The value that was at this Block before, or null
+	 */
+	@Nullable
+	public V put(@NotNull Block block, @NotNull V value) {
+		Table table = worlds.computeIfAbsent(block.getWorld().getUID(), world -> new Table());
+		synchronized (table) {
+			return table.put(key(block), value);
+		}
+	}
+
+	/**
+	 * @return The value that was removed, or null
+	 */
+	@Nullable
+	public V remove(@NotNull Block block) {
+		Table table = worlds.get(block.getWorld().getUID());
+		if (table == null) {
+			return null;
+		}
+		synchronized (table) {
+			return table.remove(key(block), null);
+		}
+	}
+
+	/**
+	 * Remove the value at this Block only if it is still the given one
+	 *
+	 * @return true if it was removed
+	 */
+	public boolean remove(@NotNull Block block, @NotNull V value) {
+		Table table = worlds.get(block.getWorld().getUID());
+		if (table == null) {
+			return false;
+		}
+		synchronized (table) {
+			return table.remove(key(block), value) != null;
+		}
+	}
+
+	public int size() {
+		int size = 0;
+		for (Table table : worlds.values()) {
+			synchronized (table) {
+				size += table.size;
+			}
+		}
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * A copy of all values, changing the map while going through them is fine
+	 */
+	@NotNull
+	public List<V> values() {
+		List<V> values = new ArrayList<>();
+		for (Table table : worlds.values()) {
+			synchronized (table) {
+				table.addValuesTo(values);
+			}
+		}
+		return values;
+	}
+
+	public boolean hasDataInWorld(@NotNull World world) {
+		Table table = worlds.get(world.getUID());
+		if (table == null) {
+			return false;
+		}
+		synchronized (table) {
+			return table.size > 0;
+		}
+	}
+
+	public void removeWorld(@NotNull UUID world) {
+		worlds.remove(world);
+	}
+
+	public void removeWorldsIf(@NotNull Predicate<UUID> filter) {
+		worlds.keySet().removeIf(filter);
+	}
+
+	public void clear() {
+		worlds.clear();
+	}
+
+	/**
+	 * View of this BlockMap as a Map, for code that expects one.
+	 * <p>Looking up, putting and removing go straight to this BlockMap. Iterating goes over a copy,
+	 * so changes while iterating are fine but don't show, and removing through the iterator does nothing
+	 *
+	 * @param blockOf Gets the Block of a value, for the keys of the entries
+	 */
+	@NotNull
+	public Map<Block, V> asMap(@NotNull Function<V, Block> blockOf) {
+		return new AbstractMap<Block, V>() {
+			@Override
+			public V get(Object key) {
+				return key instanceof Block block ? BlockMap.this.get(block) : null;
+			}
+
+			@Override
+			public boolean containsKey(Object key) {
+				return get(key) != null;
+			}
+
+			@Override
+			public V put(Block key, V value) {
+				return BlockMap.this.put(key, value);
+			}
+
+			@Override
+			public V remove(Object key) {
+				return key instanceof Block block ? BlockMap.this.remove(block) : null;
+			}
+
+			@Override
+			public int size() {
+				return BlockMap.this.size();
+			}
+
+			@Override
+			public boolean isEmpty() {
+				return BlockMap.this.isEmpty();
+			}
+
+			@Override
+			public void clear() {
+				BlockMap.this.clear();
+			}
+
+			@Override
+			public Collection<V> values() {
+				return BlockMap.this.values();
+			}
+
+			@Override
+			public Set<Entry<Block, V>> entrySet() {
+				Map<Block, V> copy = new LinkedHashMap<>();
+				for (V value : BlockMap.this.values()) {
+					copy.put(blockOf.apply(value), value);
+				}
+				return Collections.unmodifiableMap(copy).entrySet();
+			}
+		};
+	}
+
+	private static long key(Block block) {
+		return BUtil.blockKey(block.getX(), block.getY(), block.getZ());
+	}
+
+	/**
+	 * Open addressing hash table with linear probing. Slots without a value are empty, so every key including 0 can be used
+	 */
+	private final class Table {
+		private static final float LOAD_FACTOR = 0.6f;
+
+		private long[] keys = new long[16];
+		private Object[] values = new Object[16];
+		private int size;
+
+		@SuppressWarnings("unchecked")
+		private V get(long key) {
+			int mask = keys.length - 1;
+			for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+				if (keys[i] == key) {
+					return (V) values[i];
+				}
+			}
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		private V put(long key, V value) {
+			int mask = keys.length - 1;
+			int i = slot(key, mask);
+			for (; values[i] != null; i = (i + 1) & mask) {
+				if (keys[i] == key) {
+					V previous = (V) values[i];
+					values[i] = value;
+					return previous;
+				}
+			}
+			keys[i] = key;
+			values[i] = value;
+			if (++size > keys.length * LOAD_FACTOR) {
+				resize(keys.length * 2);
+			}
+			return null;
+		}
+
+		/**
+		 * @param expected Only remove if this is the value, or null to remove any
+		 */
+		@SuppressWarnings("unchecked")
+		private V remove(long key, Object expected) {
+			int mask = keys.length - 1;
+			int i = slot(key, mask);
+			for (; values[i] != null; i = (i + 1) & mask) {
+				if (keys[i] == key) {
+					break;
+				}
+			}
+			V removed = (V) values[i];
+			if (removed == null || (expected != null && removed != expected)) {
+				return null;
+			}
+			size--;
+			// Move following entries of the same run back, so no lookup stops at the new gap
+			int gap = i;
+			for (int j = (gap + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+				int home = slot(keys[j], mask);
+				if (((j - home) & mask) >= ((j - gap) & mask)) {
+					keys[gap] = keys[j];
+					values[gap] = values[j];
+					gap = j;
+				}
+			}
+			values[gap] = null;
+			return removed;
+		}
+
+		@SuppressWarnings("unchecked")
+		private void addValuesTo(List<V> list) {
+			for (Object value : values) {
+				if (value != null) {
+					list.add((V) value);
+				}
+			}
+		}
+
+		private void resize(int capacity) {
+			long[] oldKeys = keys;
+			Object[] oldValues = values;
+			keys = new long[capacity];
+			values = new Object[capacity];
+			int mask = capacity - 1;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldValues[i] != null) {
+					int j = slot(oldKeys[i], mask);
+					while (values[j] != null) {
+						j = (j + 1) & mask;
+					}
+					keys[j] = oldKeys[i];
+					values[j] = oldValues[i];
+				}
+			}
+		}
+
+		private int slot(long key, int mask) {
+			long hash = key * 0x9E3779B97F4A7C15L;
+			return (int) (hash ^ (hash >>> 32)) & mask;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.dre.brewery.storage.serialization;
+
+import com.dre.brewery.storage.records.BreweryMiscData;
+import com.dre.brewery.storage.records.SerializableBPlayer;
+import com.dre.brewery.storage.records.SerializableCauldron;
+import com.dre.brewery.storage.records.SerializableWakeup;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryRecordCodecTests {
+
+    private final SQLDataSerializer serializer = new SQLDataSerializer();
+    private final BinaryRecordCodec codec = serializer.getCodec();
+
+    @Test
+    public void cauldronRoundTrip() {
+        SerializableCauldron cauldron = new SerializableCauldron(UUID.randomUUID().toString(), "world,10,64,-20", "ingredients", 3);
+        assertEquals(cauldron, codec.decodeCauldron(codec.encode(cauldron)));
+    }
+
+    @Test
+    public void deflatedCauldronRoundTrip() {
+        // Large enough to be deflated
+        SerializableCauldron cauldron = new SerializableCauldron(UUID.randomUUID().toString(), "world,10,64,-20", "ingredient;".repeat(100), 7);
+        byte[] data = codec.encode(cauldron);
+        assertTrue(data.length < cauldron.serializedIngredients().length());
+        assertEquals(cauldron, codec.decodeCauldron(data));
+    }
+
+    @Test
+    public void playerRoundTrip() {
+        SerializableBPlayer player = new SerializableBPlayer(UUID.randomUUID().toString(), 8, 45, 12);
+        assertEquals(player, codec.decodePlayer(codec.encode(player)));
+    }
+
+    @Test
+    public void wakeupRoundTrip() {
+        SerializableWakeup wakeup = new SerializableWakeup(UUID.randomUUID().toString(), "world_nether,-5,70,300,90.0,0.0");
+        assertEquals(wakeup, codec.decodeWakeup(codec.encode(wakeup)));
+    }
+
+    @Test
+    public void nullFieldRoundTrip() {
+        SerializableCauldron cauldron = new SerializableCauldron(UUID.randomUUID().toString(), "world,0,0,0", null, 0);
+        assertEquals(cauldron, codec.decodeCauldron(codec.encode(cauldron)));
+    }
+
+    @Test
+    public void miscRoundTrip() {
+        BreweryMiscData misc = new BreweryMiscData(1700000000000L, 123456L, List.of(1L, -2L, Long.MAX_VALUE), List.of(4, 0, 17), 99, 1234.5);
+        assertEquals(misc, codec.decodeMisc(codec.encode(misc)));
+    }
+
+    @Test
+    public void convertsOldFormat() {
+        SerializableBPlayer player = new SerializableBPlayer(UUID.randomUUID().toString(), 3, 20, 0);
+        byte[] old = serializer.serialize(player).getBytes(StandardCharsets.UTF_8);
+        assertEquals(player, codec.decodePlayer(serializer.toBinary(old, SerializableBPlayer.class)));
+    }
+
+    @Test
+    public void isBinaryRejectsOldFormat() {
+        assertTrue(BinaryRecordCodec.isBinary(codec.encode(new SerializableWakeup("id", "world,1,2,3"))));
+
+        // Base64 encoded JSON of SQLDataSerializer
+        assertFalse(BinaryRecordCodec.isBinary(serializer.serialize(new SerializableWakeup("id", "world,1,2,3")).getBytes(StandardCharsets.UTF_8)));
+        assertFalse(BinaryRecordCodec.isBinary(serializer.serialize(new BreweryMiscData(0, 0, List.of(), List.of(), 0, 0)).getBytes(StandardCharsets.UTF_8)));
+        assertFalse(BinaryRecordCodec.isBinary(null));
+        assertFalse(BinaryRecordCodec.isBinary(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> codec.decodeWakeup(serializer.serialize(new SerializableWakeup("id", "world,1,2,3")).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void rejectsOtherRecordType() {
+        byte[] player = codec.encode(new SerializableBPlayer(UUID.randomUUID().toString(), 1, 2, 3));
+        assertThrows(IllegalArgumentException.class, () -> codec.decodeCauldron(player));
+    }
+}